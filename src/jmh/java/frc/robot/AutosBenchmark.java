@@ -0,0 +1,42 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.commands.Autos;
+import frc.robot.subsystems.CANDriveSubsystem;
+import frc.robot.subsystems.CANFuelSubsystem;
+
+/** Measures building the autonomous routines. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AutosBenchmark {
+  private CANDriveSubsystem driveSubsystem;
+  private CANFuelSubsystem fuelSubsystem;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    SimHal.initialize();
+    driveSubsystem = new CANDriveSubsystem();
+    fuelSubsystem = new CANFuelSubsystem();
+  }
+
+  @Benchmark
+  public Command buildExampleAuto() {
+    return Autos.exampleAuto(driveSubsystem, fuelSubsystem);
+  }
+}
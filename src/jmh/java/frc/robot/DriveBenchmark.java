@@ -0,0 +1,54 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.subsystems.CANDriveSubsystem;
+
+/**
+ * Measures the drive path. Run with the gc profiler (enabled in build.gradle);
+ * gc.alloc.rate.norm for these benchmarks should stay at 0 bytes per operation,
+ * since the drive path is meant to be allocation-free.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DriveBenchmark {
+  private CANDriveSubsystem driveSubsystem;
+  private Command driveArcadeCommand;
+  private double input;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    SimHal.initialize();
+    driveSubsystem = new CANDriveSubsystem();
+    // Vary the inputs every call so the output cache has to send them
+    driveArcadeCommand = driveSubsystem.driveArcade(() -> input, () -> -input);
+    driveArcadeCommand.initialize();
+  }
+
+  @Benchmark
+  public void driveArcadeExecute() {
+    input = input > 0.9 ? -0.9 : input + 0.01;
+    driveArcadeCommand.execute();
+  }
+
+  @Benchmark
+  public void curvatureDrive() {
+    input = input > 0.9 ? -0.9 : input + 0.01;
+    driveSubsystem.curvatureDrive(input, -input, false);
+  }
+}
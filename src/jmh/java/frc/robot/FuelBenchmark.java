@@ -0,0 +1,84 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import frc.robot.subsystems.CANFuelSubsystem;
+import frc.robot.util.CachedMotorOutput;
+
+/**
+ * Measures each of the fuel subsystem's roller actions. Each action sets the
+ * same voltages every call, so the output caches are invalidated before every
+ * call to make the action send them to the controllers, as it does when it
+ * first runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FuelBenchmark {
+  private CANFuelSubsystem fuelSubsystem;
+  private List<CachedMotorOutput> outputs;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    SimHal.initialize();
+    fuelSubsystem = new CANFuelSubsystem();
+    outputs = CachedMotorOutput.getAll();
+  }
+
+  // Makes the next action send its voltages instead of finding them cached
+  private void invalidateOutputs() {
+    for (int i = 0; i < outputs.size(); i++) {
+      outputs.get(i).invalidate();
+    }
+  }
+
+  @Benchmark
+  public void intake() {
+    invalidateOutputs();
+    fuelSubsystem.intake();
+  }
+
+  @Benchmark
+  public void hopperIntake() {
+    invalidateOutputs();
+    fuelSubsystem.hopperIntake();
+  }
+
+  @Benchmark
+  public void eject() {
+    invalidateOutputs();
+    fuelSubsystem.eject();
+  }
+
+  @Benchmark
+  public void launch() {
+    invalidateOutputs();
+    fuelSubsystem.launch();
+  }
+
+  @Benchmark
+  public void spinUp() {
+    invalidateOutputs();
+    fuelSubsystem.spinUp();
+  }
+
+  @Benchmark
+  public void stop() {
+    invalidateOutputs();
+    fuelSubsystem.stop();
+  }
+}
@@ -0,0 +1,41 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+
+/**
+ * Measures one pass of the command scheduler with the full set of subsystems
+ * and controller bindings from {@link RobotContainer}, with the default drive
+ * command running.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SchedulerBenchmark {
+  @Setup(Level.Trial)
+  public void setup() {
+    SimHal.initialize();
+    new RobotContainer();
+    // Let the scheduler pick up the default commands before measuring
+    CommandScheduler.getInstance().run();
+  }
+
+  @Benchmark
+  public void schedulerRun() {
+    CommandScheduler.getInstance().run();
+  }
+}
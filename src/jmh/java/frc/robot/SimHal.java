@@ -0,0 +1,31 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+
+/** Starts the simulated HAL for benchmarks, with the robot enabled in teleop. */
+public final class SimHal {
+  private static boolean initialized;
+
+  private SimHal() {}
+
+  public static synchronized void initialize() {
+    if (initialized) {
+      return;
+    }
+    if (!HAL.initialize(500, 0)) {
+      throw new IllegalStateException("Failed to initialize the simulated HAL");
+    }
+    DriverStationSim.setDsAttached(true);
+    DriverStationSim.setAutonomous(false);
+    DriverStationSim.setEnabled(true);
+    DriverStationSim.notifyNewData();
+    DriverStation.refreshData();
+    initialized = true;
+  }
+}
@@ -4,6 +4,11 @@
 
 package frc.robot;
 
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj.simulation.DifferentialDrivetrainSim.KitbotGearing;
+import edu.wpi.first.wpilibj.simulation.DifferentialDrivetrainSim.KitbotMotor;
+import edu.wpi.first.wpilibj.simulation.DifferentialDrivetrainSim.KitbotWheelSize;
+
 /**
  * The Constants class provides a convenient place for teams to hold robot-wide
  * numerical or boolean constants. This class should not be used for any other
@@ -23,10 +28,50 @@ public final class Constants {
     // Right side
     public static final int RIGHT_LEADER_ID = 22;  // CTR Electronics Talon SRX
     public static final int RIGHT_FOLLOWER_ID = 12;  // VEX Robotics Victor SPX
+    // Gyro
+    public static final int PIGEON_ID = 9;  // CTR Electronics Pigeon 2.0
 
     // Current limit for drivetrain motors. 60A is a reasonable maximum to reduce
     // likelihood of tripping breakers or damaging CIM motors
     public static final int DRIVE_MOTOR_CURRENT_LIMIT = 60;
+
+    // How long to wait for a drive controller to acknowledge a configuration
+    // read or write at boot
+    public static final int CAN_CONFIG_TIMEOUT_MS = 100;
+
+    // Joystick inputs smaller than this are treated as zero. Matches the
+    // DifferentialDrive default.
+    public static final double DRIVE_DEADBAND = 0.02;
+
+    // Drive outputs are only re-sent when they change by more than this much
+    // (in percent output), or when the keep-alive interval runs out
+    public static final double DRIVE_OUTPUT_EPSILON = 0.001;
+    public static final double DRIVE_OUTPUT_KEEP_ALIVE_SECONDS = 0.1;
+
+    // Quadrature encoders on the drive gearbox outputs, connected to the Talon
+    // SRX leaders. The sensor phases make positive output count up.
+    public static final int DRIVE_ENCODER_COUNTS_PER_REV = 4096;
+    public static final boolean LEFT_ENCODER_SENSOR_PHASE = false;
+    public static final boolean RIGHT_ENCODER_SENSOR_PHASE = false;
+
+    // Drivetrain geometry used by odometry. Matches the kitbot simulation.
+    public static final double DRIVE_WHEEL_DIAMETER_METERS = Units.inchesToMeters(6);
+    public static final double DRIVE_TRACK_WIDTH_METERS = Units.inchesToMeters(26);
+    public static final double DRIVE_METERS_PER_COUNT =
+        Math.PI * DRIVE_WHEEL_DIAMETER_METERS / DRIVE_ENCODER_COUNTS_PER_REV;
+
+    // The encoders and gyro are sampled every ODOMETRY_SAMPLE_PERIOD_SECONDS
+    // on their own thread. The buffer holds this many samples for the robot
+    // loop to consume (several loops' worth). The Talons send new encoder
+    // positions every 10 ms, so they change every other sample; the gyro
+    // sends a new yaw every sample.
+    public static final double ODOMETRY_SAMPLE_PERIOD_SECONDS = 0.005;
+    public static final int ODOMETRY_BUFFER_CAPACITY = 64;
+
+    // Drivetrain physical properties used by the simulation
+    public static final KitbotMotor DRIVE_SIM_MOTORS = KitbotMotor.kDualCIMPerSide;
+    public static final KitbotGearing DRIVE_SIM_GEARING = KitbotGearing.k8p45;
+    public static final KitbotWheelSize DRIVE_SIM_WHEEL_SIZE = KitbotWheelSize.kSixInch;
   }
 
   public static final class FuelConstants {
@@ -48,7 +93,157 @@ public final class Constants {
     public static final double LAUNCHING_FEEDER_VOLTAGE = 9;
     public static final double LAUNCHING_LAUNCHER_VOLTAGE = 10.6;
     public static final double SPIN_UP_FEEDER_VOLTAGE = -6;
+    // Longest time to wait for the launcher to spin up. Normally the spin-up
+    // detector finds that the launcher is at speed well before this.
     public static final double SPIN_UP_SECONDS = 1;
+
+    // Spin-up detection. The launcher current is sampled every
+    // SPIN_UP_SAMPLE_PERIOD_SECONDS. It is ready once it has been spinning up for
+    // at least SPIN_UP_MIN_SECONDS, the current has dropped to
+    // SPIN_UP_SETTLED_FRACTION of its inrush peak (or never went above
+    // SPIN_UP_INRUSH_AMPS), and the current and bus voltage have been steady for
+    // SPIN_UP_SETTLED_SAMPLES samples in a row.
+    public static final double SPIN_UP_SAMPLE_PERIOD_SECONDS = 0.005;
+    public static final double SPIN_UP_MIN_SECONDS = 0.1;
+    public static final double SPIN_UP_INRUSH_AMPS = 20;
+    public static final double SPIN_UP_SETTLED_FRACTION = 0.5;
+    public static final double SPIN_UP_SETTLED_AMPS_PER_SECOND = 15;
+    public static final double SPIN_UP_SETTLED_VOLTS_PER_SECOND = 2;
+    public static final int SPIN_UP_SETTLED_SAMPLES = 10;
+
+    // Rapid fire timing. The feeder is pulsed until a launch is detected, for at
+    // most RAPID_FIRE_FEED_SECONDS per piece of fuel, then holds fuel back until
+    // the launcher is back at speed, for at most RAPID_FIRE_RECOVER_SECONDS.
+    public static final double RAPID_FIRE_FEED_SECONDS = 0.15;
+    public static final double RAPID_FIRE_RECOVER_SECONDS = 0.5;
+
+    // Fuel event detection. While the rollers run, their current is sampled
+    // every FUEL_EVENT_SAMPLE_PERIOD_SECONDS. A rise of more than
+    // FUEL_EVENT_SPIKE_AMPS above the slowly filtered baseline counts as one
+    // piece of fuel, at most once per FUEL_EVENT_MIN_INTERVAL_SECONDS. Spikes in
+    // the first FUEL_EVENT_BLANKING_SECONDS after the rollers change mode are
+    // their own inrush and are ignored. The launch rate is counted over the last
+    // FUEL_THROUGHPUT_WINDOW_SECONDS.
+    public static final double FUEL_EVENT_SAMPLE_PERIOD_SECONDS = 0.005;
+    public static final double FUEL_EVENT_SPIKE_AMPS = 8;
+    public static final double FUEL_EVENT_BASELINE_FILTER = 0.02;
+    public static final double FUEL_EVENT_MIN_INTERVAL_SECONDS = 0.08;
+    public static final double FUEL_EVENT_BLANKING_SECONDS = 0.3;
+    public static final double FUEL_THROUGHPUT_WINDOW_SECONDS = 3;
+
+    // Roller voltages are only re-sent when they change by more than this many
+    // volts, or when the keep-alive interval runs out
+    public static final double ROLLER_OUTPUT_EPSILON = 0.01;
+    public static final double ROLLER_OUTPUT_KEEP_ALIVE_SECONDS = 0.1;
+
+    // Roller physical properties used by the simulation. Moments of inertia are
+    // in kg m^2 and gearings are motor rotations per roller rotation.
+    public static final double FEEDER_SIM_MOI = 0.0005;
+    public static final double FEEDER_SIM_GEARING = 1;
+    public static final double LAUNCHER_SIM_MOI = 0.002;
+    public static final double LAUNCHER_SIM_GEARING = 1;
+  }
+
+  public static final class PowerConstants {
+    // Battery voltage at or above which there is full headroom, and at or below
+    // which there is none. Well above the roboRIO brownout threshold so there is
+    // time to react.
+    public static final double POWER_FULL_HEADROOM_VOLTS = 10.5;
+    public static final double POWER_NO_HEADROOM_VOLTS = 8.0;
+
+    // Total current draw that the mechanisms together should stay under, and
+    // how far below it the budget starts cutting back
+    public static final double POWER_TOTAL_CURRENT_BUDGET = 250;
+    public static final double POWER_CURRENT_MARGIN = 60;
+
+    // Weight given to each new headroom reading, to avoid oscillating
+    public static final double POWER_HEADROOM_FILTER = 0.1;
+
+    // Lowest output scale the budget will give the mechanism that is not the
+    // priority, and lowest output scale for the priority one. The fuel rollers'
+    // current limit is also cut back to FUEL_MIN_CURRENT_LIMIT when they are
+    // not the priority. The drive current limit is never changed, since the
+    // Talon SRX stores it in flash.
+    public static final int FUEL_MIN_CURRENT_LIMIT = 30;
+    public static final double MIN_OUTPUT_SCALE = 0.6;
+    public static final double PRIORITY_MIN_OUTPUT_SCALE = 0.85;
+
+    // The fuel current limit is changed in steps of this many amps, and cut
+    // back at most once per this many seconds, so the controllers are not
+    // reconfigured every loop. It is raised again without waiting.
+    public static final int CURRENT_LIMIT_STEP = 10;
+    public static final double CURRENT_LIMIT_MIN_UPDATE_SECONDS = 0.5;
+  }
+
+  public static final class CANConstants {
+    // How often the CAN bus monitor publishes utilization and error counts.
+    // Utilization is averaged, and its peak taken, over each period.
+    public static final double CAN_MONITOR_PERIOD_SECONDS = 0.5;
+  }
+
+  public static final class TelemetryConstants {
+    // Number of records the telemetry ring buffer can hold before the robot
+    // thread starts dropping them (about 10 seconds at one record per loop)
+    public static final int TELEMETRY_BUFFER_CAPACITY = 512;
+
+    // How often the background writer drains the ring buffer to the log
+    public static final double TELEMETRY_WRITER_PERIOD_SECONDS = 0.1;
+
+    // How often each group of dashboard values is published. Values are only
+    // sent when they have changed. Drive values are sent every loop, fuel
+    // counts a few times faster than the diagnostics (power, CAN, timing, GC
+    // and autonomous timeline).
+    public static final double DRIVE_TELEMETRY_PERIOD_SECONDS = 0.02;
+    public static final double FUEL_TELEMETRY_PERIOD_SECONDS = 0.04;
+    public static final double DIAGNOSTICS_TELEMETRY_PERIOD_SECONDS = 0.1;
+  }
+
+  public static final class ReplayConstants {
+    // Number of input log records the ring buffer can hold before the robot
+    // thread starts dropping them (about 10 seconds at one record per loop)
+    public static final int INPUT_LOG_BUFFER_CAPACITY = 512;
+
+    // How often the background writer drains the ring buffer to the file
+    public static final double INPUT_LOG_WRITER_PERIOD_SECONDS = 0.1;
+
+    // Input logs are kept in their own directory. The oldest are deleted when
+    // starting a new one so that at most this many are kept and at least this
+    // much space is left free (the same margin the data log keeps). Recording
+    // stops if free space falls below it during a run.
+    public static final int INPUT_LOG_MAX_FILES = 10;
+    public static final long INPUT_LOG_MIN_FREE_BYTES = 50L * 1024 * 1024;
+
+    // Replayed outputs further than this from the recorded ones are reported
+    // as differences, and at most this many differences are printed
+    public static final double REPLAY_OUTPUT_TOLERANCE = 1e-9;
+    public static final int REPLAY_MAX_REPORTED_DIFFERENCES = 20;
+  }
+
+  public static final class WarmupConstants {
+    // Number of execute() calls made on each command in a warmup pass
+    public static final int WARMUP_EXECUTES_PER_PASS = 5;
+
+    // Warmup stops once WARMUP_STEADY_PASSES passes in a row have each taken
+    // within WARMUP_STEADY_TOLERANCE (as a fraction) of the previous pass, or
+    // after WARMUP_MAX_PASSES passes
+    public static final double WARMUP_STEADY_TOLERANCE = 0.1;
+    public static final int WARMUP_STEADY_PASSES = 10;
+    public static final int WARMUP_MAX_PASSES = 250;
+  }
+
+  public static final class AutoConstants {
+    // The example routine drives AUTO_DRIVE_DISTANCE_METERS at AUTO_DRIVE_SPEED
+    // (joystick input, which is squared) while the launcher spins up. If the
+    // encoders are not working the drive gives up after
+    // AUTO_DRIVE_TIMEOUT_SECONDS, about as long as the old fixed-time drive.
+    public static final double AUTO_DRIVE_DISTANCE_METERS = 0.2;
+    public static final double AUTO_DRIVE_SPEED = 0.5;
+    public static final double AUTO_DRIVE_TIMEOUT_SECONDS = 0.3;
+
+    // It then launches until no fuel has left for AUTO_EMPTY_HOPPER_SECONDS,
+    // for at most AUTO_LAUNCH_SECONDS
+    public static final double AUTO_EMPTY_HOPPER_SECONDS = 1.5;
+    public static final double AUTO_LAUNCH_SECONDS = 9;
   }
 
   public static final class OperatorConstants {
@@ -60,5 +255,11 @@ public final class Constants {
     // help avoid driving and turning too fast and being difficult to control
     public static final double DRIVE_SCALING = .7;
     public static final double ROTATION_SCALING = .8;
+
+    // Default for the "Late-sampled drive" dashboard switch. When on, the drive
+    // joystick axes are read at the very end of the loop, right before the
+    // motors are written. Off by default until the Input/ latency histograms
+    // show that it reduces the input lag the driver feels.
+    public static final boolean LATE_SAMPLED_DRIVE = false;
   }
 }
@@ -4,11 +4,26 @@
 
 package frc.robot;
 
+import java.io.File;
+
 import edu.wpi.first.hal.HAL;
 import edu.wpi.first.hal.FRCNetComm.tResourceType;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.Filesystem;
 import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.simulation.BatterySim;
+import edu.wpi.first.wpilibj.simulation.RoboRioSim;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.sim.HeadlessSimulation;
+import frc.robot.sim.LogReplay;
+import frc.robot.util.CachedMotorOutput;
+import frc.robot.util.GcMonitor;
+import frc.robot.util.InputLatency;
+import frc.robot.util.InputLog;
+import frc.robot.util.LoopTimer;
+import frc.robot.util.TelemetryGroup;
+import static frc.robot.Constants.OperatorConstants.CONTROLLER_PORT;
 
 /**
  * The VM is configured to automatically run this class, and to call the
@@ -24,6 +39,9 @@ public class Robot extends TimedRobot {
 
   private RobotContainer m_robotContainer;
 
+  private final LoopTimer.Section m_schedulerTiming = LoopTimer.section("Scheduler");
+  private final LoopTimer.Section m_telemetryTiming = LoopTimer.section("Telemetry publish");
+
   /**
    * This function is run when the robot is first started up and should be used
    * for any
@@ -31,11 +49,33 @@ public class Robot extends TimedRobot {
    */
   @Override
   public void robotInit() {
+    // Start recording to a WPILOG file. The telemetry subsystem writes its
+    // records into this log from a background thread.
+    DataLogManager.start();
+
     // Instantiate our RobotContainer. This will perform all our button bindings,
     // and put our
     // autonomous chooser on the dashboard.
     m_robotContainer = new RobotContainer();
 
+    // Start timestamping driver station packets to measure input latency
+    InputLatency.start();
+
+    // Time each scheduled command's execute(). This has to happen after the
+    // RobotContainer has made all of its trigger bindings.
+    LoopTimer.installCommandHooks(m_robotContainer.getCommandNames());
+
+    // Tie each garbage collection pause to the loop it happened in
+    GcMonitor.start();
+
+    // Record every input the code reads so the match can be replayed. Always
+    // on the robot; in simulation only when asked for, and never while
+    // replaying.
+    if ((isReal() || InputLog.isRecordingRequested()) && !LogReplay.isRequested()) {
+      InputLog.startRecording(new File(Filesystem.getOperatingDirectory(), "inputs"),
+          CONTROLLER_PORT);
+    }
+
     // Used to track usage of Kitbot code, please do not remove.
     HAL.report(tResourceType.kResourceType_Framework, 10);
   }
@@ -52,6 +92,10 @@ public class Robot extends TimedRobot {
    */
   @Override
   public void robotPeriodic() {
+    // The driver station data was refreshed at the start of the loop and is not
+    // refreshed again until the late-sampled drive below, so record it now
+    InputLog.captureDriverStation();
+
     // Runs the Scheduler. This is responsible for polling buttons, adding
     // newly-scheduled
     // commands, running already-scheduled commands, removing finished or
@@ -59,7 +103,34 @@ public class Robot extends TimedRobot {
     // and running subsystem periodic() methods. This must be called from the
     // robot's periodic
     // block in order for anything in the Command-based framework to work.
+    long start = m_schedulerTiming.start();
     CommandScheduler.getInstance().run();
+    m_schedulerTiming.stop(start);
+
+    // Now that everything else has run, drive with the newest joystick inputs
+    m_robotContainer.flushLateSampledDrive();
+
+    // Send the dashboard values that are due and have changed
+    start = m_telemetryTiming.start();
+    TelemetryGroup.publishAll();
+    m_telemetryTiming.stop(start);
+  }
+
+  /**
+   * Runs one iteration of the robot loop, timing the whole iteration including
+   * the mode specific periodic functions and dashboard updates.
+   */
+  @Override
+  protected void loopFunc() {
+    InputLog.beginLoop();
+    LoopTimer.loopStart();
+    GcMonitor.loopStart();
+    // The driver station inputs are refreshed at the start of the loop
+    InputLatency.markRefresh();
+    super.loopFunc();
+    LoopTimer.loopEnd();
+    GcMonitor.loopEnd();
+    InputLog.endLoop();
   }
 
   /** This function is called once each time the robot enters Disabled mode. */
@@ -69,6 +140,13 @@ public class Robot extends TimedRobot {
 
   @Override
   public void disabledPeriodic() {
+    // Build the selected autonomous routine ahead of time, so autonomousInit()
+    // only has to schedule it
+    m_robotContainer.buildSelectedAuto();
+
+    // Warm up the JIT on the command paths while nothing else is happening, so
+    // the first enabled loop is as fast as later ones
+    m_robotContainer.runWarmup();
   }
 
   /**
@@ -77,6 +155,8 @@ public class Robot extends TimedRobot {
    */
   @Override
   public void autonomousInit() {
+    // Controllers were neutral while disabled, so send every output again
+    CachedMotorOutput.invalidateAll();
     m_autonomousCommand = m_robotContainer.getAutonomousCommand();
 
     // schedule the autonomous command (example)
@@ -92,6 +172,7 @@ public class Robot extends TimedRobot {
 
   @Override
   public void teleopInit() {
+    CachedMotorOutput.invalidateAll();
     // This makes sure that the autonomous stops running when
     // teleop starts running. If you want the autonomous to
     // continue until interrupted by another command, remove
@@ -108,6 +189,7 @@ public class Robot extends TimedRobot {
 
   @Override
   public void testInit() {
+    CachedMotorOutput.invalidateAll();
     // Cancels all running commands at the start of test mode.
     CommandScheduler.getInstance().cancelAll();
   }
@@ -120,10 +202,21 @@ public class Robot extends TimedRobot {
   /** This function is called once when the robot is first started up. */
   @Override
   public void simulationInit() {
+    // When replaying a log or run headless, take over the simulation clock and
+    // step through the log or scripted matches as fast as the CPU allows
+    if (LogReplay.isRequested()) {
+      LogReplay.start();
+    } else if (HeadlessSimulation.isRequested()) {
+      HeadlessSimulation.start();
+    }
   }
 
   /** This function is called periodically whilst in simulation. */
   @Override
   public void simulationPeriodic() {
+    // The subsystem simulation models have already been stepped by the
+    // scheduler, so sag the battery by the total current they drew
+    RoboRioSim.setVInVoltage(
+        BatterySim.calculateDefaultBatteryLoadedVoltage(m_robotContainer.getSimulatedCurrentDraw()));
   }
 }
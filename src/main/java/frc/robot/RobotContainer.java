@@ -4,16 +4,27 @@
 
 package frc.robot;
 
-import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
+import java.util.List;
+import java.util.function.Supplier;
+
+import edu.wpi.first.wpilibj.DataLogManager;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.button.CommandPS5Controller;
 import edu.wpi.first.wpilibj2.command.button.Trigger;
 
 import static frc.robot.Constants.OperatorConstants.*;
 import static frc.robot.Constants.FuelConstants.*;
+import frc.robot.commands.AutoRegistry;
 import frc.robot.commands.Autos;
+import frc.robot.subsystems.CANBusMonitorSubsystem;
 import frc.robot.subsystems.CANDriveSubsystem;
 import frc.robot.subsystems.CANFuelSubsystem;
+import frc.robot.subsystems.PowerBudgetSubsystem;
+import frc.robot.subsystems.TelemetrySubsystem;
+import frc.robot.util.DeviceConfigurator;
+import frc.robot.util.LoggedInput;
+import frc.robot.util.StatusFrameProfile;
+import frc.robot.util.Warmup;
 
 /**
  * This class is where the bulk of the robot should be declared. Since
@@ -26,23 +37,53 @@ public class RobotContainer {
   // The robot's subsystems
   private final CANDriveSubsystem driveSubsystem = new CANDriveSubsystem();
   private final CANFuelSubsystem ballSubsystem = new CANFuelSubsystem();
+  private final PowerBudgetSubsystem powerBudgetSubsystem =
+      new PowerBudgetSubsystem(driveSubsystem, ballSubsystem);
+  private final TelemetrySubsystem telemetrySubsystem =
+      new TelemetrySubsystem(driveSubsystem, ballSubsystem, powerBudgetSubsystem);
+  private final CANBusMonitorSubsystem canBusMonitorSubsystem = new CANBusMonitorSubsystem();
 
   // The controller for both driver and operator
   private final CommandPS5Controller controller = new CommandPS5Controller(CONTROLLER_PORT);
 
-  // The autonomous chooser
-  private final SendableChooser<Command> autoChooser = new SendableChooser<>();
+  // The autonomous routines and the chooser for selecting one
+  private final AutoRegistry autoRegistry = new AutoRegistry();
+
+  // Runs every bound command and autonomous routine while disabled to warm up
+  // the JIT before the match
+  private final Warmup warmup = new Warmup();
 
   /**
    * The container for the robot. Contains subsystems, OI devices, and commands.
    */
   public RobotContainer() {
+    configureDevices();
     configureBindings();
 
     // Set the options to show up in the Dashboard for selecting auto modes. If you
     // add additional auto modes you can add additional lines here with
-    // autoChooser.addOption
-    autoChooser.setDefaultOption("Autonomous", Autos.exampleAuto(driveSubsystem, ballSubsystem));
+    // autoRegistry.addOption. Routines are only built when they are selected.
+    autoRegistry.setDefault("Autonomous", () -> Autos.exampleAuto(driveSubsystem, ballSubsystem));
+    autoRegistry.publish("Auto choices");
+
+    // Warm up building and running every autonomous routine while disabled
+    for (Supplier<Command> factory : autoRegistry.getFactories()) {
+      warmup.addFactory(factory);
+    }
+  }
+
+  /**
+   * Configures the motor controllers of every subsystem. All devices are
+   * configured concurrently, and persistent settings are only written when they
+   * have changed. Status frame periods come from the profile for this run.
+   */
+  private void configureDevices() {
+    StatusFrameProfile profile = StatusFrameProfile.select();
+    DataLogManager.log("Status frame profile: " + profile);
+    DeviceConfigurator configurator = new DeviceConfigurator();
+    driveSubsystem.addDeviceConfiguration(configurator, profile);
+    ballSubsystem.addDeviceConfiguration(configurator, profile);
+    configurator.configureAll();
   }
 
   /**
@@ -59,21 +100,29 @@ public class RobotContainer {
   private void configureBindings() {
 
     // While the L1 button on controller is held, intake Fuel
-    controller.L1()
-        .whileTrue(ballSubsystem.runEnd(() -> ballSubsystem.intake(), () -> ballSubsystem.stop()));
+    Command intakeCommand = ballSubsystem.runEnd(() -> ballSubsystem.intake(), () -> ballSubsystem.stop())
+        .withName("Intake");
+    controller.L1().whileTrue(intakeCommand);
     // While the Square button on controller is held, hopper intake Fuel (half power)
-    controller.square()
-        .whileTrue(ballSubsystem.hopperIntakeCommand());
-    // While the R1 button on the controller is held, spin up for 1
-    // second, then launch fuel. When the button is released, stop.
-    controller.R1()
-        .whileTrue(ballSubsystem.spinUpCommand().withTimeout(SPIN_UP_SECONDS)
-            .andThen(ballSubsystem.launchCommand())
-            .finallyDo(() -> ballSubsystem.stop()));
+    Command hopperIntakeCommand = ballSubsystem.hopperIntakeCommand().withName("Hopper intake");
+    controller.square().whileTrue(hopperIntakeCommand);
+    // While the R1 button on the controller is held, spin up until the
+    // launcher is at speed (at most SPIN_UP_SECONDS), then launch fuel. When the
+    // button is released, stop.
+    Command launchCommand = ballSubsystem.spinUpUntilReadyCommand()
+        .andThen(ballSubsystem.launchCommand())
+        .finallyDo(() -> ballSubsystem.stop())
+        .withName("Launch");
+    controller.R1().whileTrue(launchCommand);
+    // While the R2 button on the controller is held, launch fuel as fast as the
+    // launcher can recover between shots
+    Command rapidFireCommand = ballSubsystem.rapidFireCommand().withName("Rapid fire");
+    controller.R2().whileTrue(rapidFireCommand);
     // While the Cross button is held on the controller, eject fuel back out
     // the intake
-    controller.cross()
-        .whileTrue(ballSubsystem.runEnd(() -> ballSubsystem.eject(), () -> ballSubsystem.stop()));
+    Command ejectCommand = ballSubsystem.runEnd(() -> ballSubsystem.eject(), () -> ballSubsystem.stop())
+        .withName("Eject");
+    controller.cross().whileTrue(ejectCommand);
 
     // Set the default command for the drive subsystem to the command provided by
     // factory with the values provided by the joystick axes on the controller.
@@ -81,11 +130,72 @@ public class RobotContainer {
     // stick away from you (a negative value) drives the robot forwards (a positive
     // value). The R stick X-axis is also inverted so a positive value (stick to the right)
     // results in clockwise rotation (front of the robot turning right). Both axes
-    // are also scaled down so the rotation is more easily controllable.
-    driveSubsystem.setDefaultCommand(
-        driveSubsystem.driveArcade(
-            () -> -controller.getLeftY() * DRIVE_SCALING,
-            () -> -controller.getRightX() * ROTATION_SCALING));
+    // are also scaled down so the rotation is more easily controllable. The
+    // axes are sampled as late in the loop as possible, see
+    // flushLateSampledDrive. Since that can be after the driver station data is
+    // refreshed again, the axes are recorded by the input log themselves.
+    LoggedInput xSpeedInput = LoggedInput.of("Drive/X speed input",
+        () -> -controller.getLeftY() * DRIVE_SCALING);
+    LoggedInput zRotationInput = LoggedInput.of("Drive/Z rotation input",
+        () -> -controller.getRightX() * ROTATION_SCALING);
+    Command driveCommand = driveSubsystem.driveArcadeLateSampled(xSpeedInput::get, zRotationInput::get)
+        .withName("Arcade drive");
+    driveSubsystem.setDefaultCommand(driveCommand);
+
+    // Warm up every bound command while disabled
+    warmup.addCommand(intakeCommand);
+    warmup.addCommand(hopperIntakeCommand);
+    warmup.addCommand(launchCommand);
+    warmup.addCommand(rapidFireCommand);
+    warmup.addCommand(ejectCommand);
+    warmup.addCommand(driveCommand);
+    warmup.addRestore(ballSubsystem::resetState);
+    warmup.addRestore(driveSubsystem::stop);
+  }
+
+  /**
+   * Drives with the joystick inputs read right now, if the drive command armed
+   * a late-sampled drive this loop. Must be called after the scheduler has run.
+   */
+  public void flushLateSampledDrive() {
+    driveSubsystem.flushLateSampledDrive();
+  }
+
+  /**
+   * Builds the autonomous routine selected on the dashboard if the selection
+   * has changed, so that it is ready before autonomous starts. Should be called
+   * periodically while disabled.
+   */
+  public void buildSelectedAuto() {
+    autoRegistry.buildSelected();
+  }
+
+  /**
+   * Returns the names of every bound command and autonomous routine, so their
+   * timing sections can be created at startup.
+   *
+   * @return the command names
+   */
+  public List<String> getCommandNames() {
+    return warmup.getCommandNames();
+  }
+
+  /**
+   * Runs one JIT warmup pass over the bound commands and autonomous routines,
+   * until the pass time has become steady. Must only be called while disabled.
+   */
+  public void runWarmup() {
+    warmup.runPass();
+  }
+
+  /**
+   * Returns the total current drawn by the simulated mechanisms, used to model
+   * battery sag in simulation.
+   *
+   * @return the simulated current draw in amps
+   */
+  public double getSimulatedCurrentDraw() {
+    return driveSubsystem.getSimulatedCurrentDraw() + ballSubsystem.getSimulatedCurrentDraw();
   }
 
   /**
@@ -94,7 +204,7 @@ public class RobotContainer {
    * @return the command to run in autonomous
    */
   public Command getAutonomousCommand() {
-    // An example command will be run in autonomous
-    return autoChooser.getSelected();
+    // The selected routine, already built while disabled
+    return autoRegistry.getSelected();
   }
 }
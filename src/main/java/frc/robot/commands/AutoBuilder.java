@@ -0,0 +1,124 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.Commands;
+import edu.wpi.first.wpilibj2.command.WrapperCommand;
+
+/**
+ * Builds an autonomous routine as a series of phases. Each phase runs one or
+ * more named stages at the same time, such as driving while the launcher spins
+ * up, and the next phase starts as soon as every stage of the current one has
+ * ended. Stages should end on a sensor condition (for example with
+ * {@link Command#until}) rather than a fixed time, with a timeout only as a
+ * safety limit, so that no phase waits longer than it has to.
+ *
+ * <p>
+ * Stages running together must not require the same subsystem. Every stage is
+ * timed by an {@link AutoProfiler}, which reports the routine's timeline and
+ * critical path when it ends.
+ */
+public class AutoBuilder {
+  private final String name;
+  private final AutoProfiler profiler;
+  private final List<Command> phases = new ArrayList<>();
+
+  public AutoBuilder(String name) {
+    this.name = name;
+    profiler = new AutoProfiler(name);
+  }
+
+  // A named part of a routine
+  public static final class Stage {
+    private final String name;
+    private final Command command;
+
+    private Stage(String name, Command command) {
+      this.name = name;
+      this.command = command;
+    }
+  }
+
+  // Creates a stage that runs the given command
+  public static Stage stage(String name, Command command) {
+    return new Stage(name, command);
+  }
+
+  // Adds a phase that runs one stage
+  public AutoBuilder then(String stageName, Command command) {
+    return then(stage(stageName, command));
+  }
+
+  // Adds a phase that runs the given stages at the same time, and ends when
+  // all of them have ended
+  public AutoBuilder then(Stage... stages) {
+    int phase = phases.size();
+    Command[] commands = new Command[stages.length];
+    for (int i = 0; i < stages.length; i++) {
+      int index = profiler.addStage(stages[i].name, phase);
+      commands[i] = new ProfiledStage(stages[i].command, profiler, index);
+    }
+    phases.add(commands.length == 1 ? commands[0] : Commands.parallel(commands));
+    return this;
+  }
+
+  // Builds the routine. The builder should not be used afterwards.
+  public Command build() {
+    ProfiledRoutine routine =
+        new ProfiledRoutine(Commands.sequence(phases.toArray(new Command[0])), profiler);
+    routine.setName(name);
+    return routine;
+  }
+
+  // Tells the profiler when a stage starts and ends
+  private static final class ProfiledStage extends WrapperCommand {
+    private final AutoProfiler profiler;
+    private final int index;
+
+    ProfiledStage(Command command, AutoProfiler profiler, int index) {
+      super(command);
+      this.profiler = profiler;
+      this.index = index;
+    }
+
+    @Override
+    public void initialize() {
+      profiler.stageStarted(index);
+      super.initialize();
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+      super.end(interrupted);
+      profiler.stageEnded(index, interrupted);
+    }
+  }
+
+  // Tells the profiler when the whole routine starts and ends
+  private static final class ProfiledRoutine extends WrapperCommand {
+    private final AutoProfiler profiler;
+
+    ProfiledRoutine(Command command, AutoProfiler profiler) {
+      super(command);
+      this.profiler = profiler;
+    }
+
+    @Override
+    public void initialize() {
+      profiler.routineStarted();
+      super.initialize();
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+      super.end(interrupted);
+      profiler.routineEnded(interrupted);
+    }
+  }
+}
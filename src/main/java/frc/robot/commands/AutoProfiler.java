@@ -0,0 +1,148 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.util.TelemetryGroup;
+import static frc.robot.Constants.TelemetryConstants.DIAGNOSTICS_TELEMETRY_PERIOD_SECONDS;
+
+/**
+ * Records when each stage of an autonomous routine built by
+ * {@link AutoBuilder} starts and ends, and reports the timeline when the
+ * routine finishes.
+ *
+ * <p>
+ * The stages of a phase run together and the next phase starts when the last
+ * of them ends, so in each phase the stage that ended last is on the critical
+ * path: making it faster makes the whole routine faster. The other stages have
+ * slack, the time they could take longer without delaying the routine, and
+ * speeding them up gains nothing. The timeline is written to the data log and
+ * the total time, critical path and each stage's time and slack are published
+ * under "Auto/".
+ *
+ * <p>
+ * Only runs that start while the robot is enabled are reported, so warming up
+ * the routine while disabled does not produce reports.
+ */
+public class AutoProfiler {
+  // Dashboard values, sent only when they change
+  private static final TelemetryGroup telemetry =
+      new TelemetryGroup("Auto", DIAGNOSTICS_TELEMETRY_PERIOD_SECONDS);
+  private static final TelemetryGroup.DoubleField totalField = telemetry.addDouble("Total seconds");
+  private static final TelemetryGroup.StringField criticalPathField = telemetry.addString("Critical path");
+
+  private final String routineName;
+  private final List<String> stageNames = new ArrayList<>();
+  private final List<Integer> stagePhases = new ArrayList<>();
+  private final List<TelemetryGroup.DoubleField> stageTimeFields = new ArrayList<>();
+  private final List<TelemetryGroup.DoubleField> stageSlackFields = new ArrayList<>();
+  private int phaseCount;
+
+  private double[] starts = new double[0];
+  private double[] ends = new double[0];
+  private boolean[] interrupted = new boolean[0];
+  private double routineStart;
+  private boolean profiling;
+
+  public AutoProfiler(String routineName) {
+    this.routineName = routineName;
+  }
+
+  // Adds a stage to the given phase and returns its index. Phases are numbered
+  // from 0 in the order they run.
+  int addStage(String name, int phase) {
+    stageNames.add(name);
+    stagePhases.add(phase);
+    stageTimeFields.add(telemetry.addDouble("Stages/" + name + " seconds"));
+    stageSlackFields.add(telemetry.addDouble("Stages/" + name + " slack seconds"));
+    phaseCount = Math.max(phaseCount, phase + 1);
+    starts = new double[stageNames.size()];
+    ends = new double[stageNames.size()];
+    interrupted = new boolean[stageNames.size()];
+    return stageNames.size() - 1;
+  }
+
+  // Called when the routine starts
+  void routineStarted() {
+    profiling = DriverStation.isEnabled();
+    routineStart = Timer.getFPGATimestamp();
+    for (int i = 0; i < starts.length; i++) {
+      starts[i] = Double.NaN;
+      ends[i] = Double.NaN;
+      interrupted[i] = false;
+    }
+  }
+
+  void stageStarted(int stage) {
+    starts[stage] = Timer.getFPGATimestamp() - routineStart;
+  }
+
+  void stageEnded(int stage, boolean wasInterrupted) {
+    ends[stage] = Timer.getFPGATimestamp() - routineStart;
+    interrupted[stage] = wasInterrupted;
+  }
+
+  // Called when the routine ends, either after its last phase or interrupted
+  void routineEnded(boolean wasInterrupted) {
+    if (!profiling) {
+      return;
+    }
+    profiling = false;
+    double total = Timer.getFPGATimestamp() - routineStart;
+
+    StringBuilder report = new StringBuilder();
+    StringBuilder criticalPath = new StringBuilder();
+    report.append(String.format("Autonomous routine %s %s after %.2f s", routineName,
+        wasInterrupted ? "was interrupted" : "finished", total));
+
+    for (int phase = 0; phase < phaseCount; phase++) {
+      // The stage that ended last held up the next phase
+      int critical = -1;
+      double phaseEnd = Double.NaN;
+      for (int i = 0; i < stageNames.size(); i++) {
+        if (stagePhases.get(i) == phase && !Double.isNaN(ends[i])
+            && (critical < 0 || ends[i] > phaseEnd)) {
+          critical = i;
+          phaseEnd = ends[i];
+        }
+      }
+      if (critical >= 0) {
+        if (criticalPath.length() > 0) {
+          criticalPath.append(" > ");
+        }
+        criticalPath.append(stageNames.get(critical));
+      }
+
+      for (int i = 0; i < stageNames.size(); i++) {
+        if (stagePhases.get(i) != phase || Double.isNaN(starts[i])) {
+          continue;
+        }
+        String name = stageNames.get(i);
+        double end = Double.isNaN(ends[i]) ? total : ends[i];
+        double slack = Double.isNaN(phaseEnd) ? 0 : phaseEnd - end;
+        report.append(String.format("%n  phase %d  %-24s %6.2f - %6.2f s", phase + 1, name, starts[i], end));
+        if (i == critical) {
+          report.append("  critical");
+        } else if (slack > 0) {
+          report.append(String.format("  slack %.2f s", slack));
+        }
+        if (interrupted[i] || Double.isNaN(ends[i])) {
+          report.append("  (interrupted)");
+        }
+        stageTimeFields.get(i).set(end - starts[i]);
+        stageSlackFields.get(i).set(slack);
+      }
+    }
+
+    DataLogManager.log(report.toString());
+    totalField.set(total);
+    criticalPathField.set(criticalPath.toString());
+  }
+}
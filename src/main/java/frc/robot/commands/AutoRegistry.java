@@ -0,0 +1,96 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.Command;
+
+/**
+ * Holds the autonomous routines as factories rather than built commands, and
+ * only builds the one that is selected on the dashboard. The selected routine
+ * is built while the robot is disabled, whenever the selection changes, and
+ * cached so that getting it at the start of autonomous does no work.
+ */
+public class AutoRegistry {
+  private final SendableChooser<String> chooser = new SendableChooser<>();
+  private final Map<String, Supplier<Command>> factories = new LinkedHashMap<>();
+
+  private String builtName;
+  private Command builtCommand;
+  private boolean selectionChanged = true;
+
+  public AutoRegistry() {
+    // The chooser calls this from the robot thread when the dashboard
+    // selection changes
+    chooser.onChange(name -> selectionChanged = true);
+  }
+
+  // Adds the routine that is selected when nothing has been chosen
+  public void setDefault(String name, Supplier<Command> factory) {
+    factories.put(name, factory);
+    chooser.setDefaultOption(name, name);
+  }
+
+  // Adds another routine to choose from
+  public void addOption(String name, Supplier<Command> factory) {
+    factories.put(name, factory);
+    chooser.addOption(name, name);
+  }
+
+  // Puts the chooser on the dashboard under the given key
+  public void publish(String key) {
+    SmartDashboard.putData(key, chooser);
+  }
+
+  // Returns the factories for every registered routine
+  public List<Supplier<Command>> getFactories() {
+    return new ArrayList<>(factories.values());
+  }
+
+  // Builds the selected routine if the selection has changed since it was last
+  // built. Call this periodically while disabled.
+  public void buildSelected() {
+    if (!selectionChanged) {
+      return;
+    }
+    selectionChanged = false;
+
+    String name = chooser.getSelected();
+    if (name != null && !name.equals(builtName)) {
+      build(name);
+    }
+  }
+
+  // Returns the selected routine. This is normally the cached command built
+  // while disabled; it is only built here if the selection could not be built
+  // ahead of time.
+  public Command getSelected() {
+    String name = chooser.getSelected();
+    if (name == null) {
+      return null;
+    }
+    if (!name.equals(builtName)) {
+      DataLogManager.log("Autonomous routine " + name + " was not prebuilt, building it now");
+      build(name);
+    }
+    return builtCommand;
+  }
+
+  private void build(String name) {
+    long start = System.nanoTime();
+    builtCommand = factories.get(name).get();
+    builtName = name;
+    DataLogManager.log(String.format("Built autonomous routine %s in %.1f ms", name,
+        (System.nanoTime() - start) / 1e6));
+  }
+}
@@ -5,26 +5,28 @@
 package frc.robot.commands;
 
 import edu.wpi.first.wpilibj2.command.Command;
-import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 import frc.robot.subsystems.CANFuelSubsystem;
 import frc.robot.subsystems.CANDriveSubsystem;
+import static frc.robot.Constants.AutoConstants.*;
 
 public final class Autos {
-  // Example autonomous command which drives forward for 1 second.
+  // Example autonomous command which drives away from the starting line and
+  // launches all of the preloaded fuel.
   public static final Command exampleAuto(CANDriveSubsystem driveSubsystem, CANFuelSubsystem ballSubsystem) {
-    return new SequentialCommandGroup(
-        // Drive backwards for .25 seconds. The driveArcadeAuto command factory
-        // creates a command which does not end which allows us to control
-        // the timing using the withTimeout decorator
-        driveSubsystem.driveArcade(() -> 0.5, () -> 0).withTimeout(.25),
-        // Stop driving. This line uses the regular driveArcade command factory so it
-        // ends immediately after commanding the motors to stop
-        driveSubsystem.driveArcade(() -> 0, () -> 0),
-        // Spin up the launcher for 1 second and then launch balls for 9 seconds, for a
-        // total of 10 seconds
-        ballSubsystem.spinUpCommand().withTimeout(1),
-        ballSubsystem.launchCommand().withTimeout(9),
-        // Stop running the launcher
-        ballSubsystem.runOnce(() -> ballSubsystem.stop()));
+    return new AutoBuilder("Autonomous")
+        // Drive backwards while the launcher spins up. The drive ends once the
+        // encoders have covered the distance and then stops the motors, and the
+        // spin-up ends once the launcher is at speed (at most 1 second). The
+        // launcher keeps spinning if the drive takes longer.
+        .then(
+            AutoBuilder.stage("Drive",
+                driveSubsystem.driveDistance(AUTO_DRIVE_DISTANCE_METERS, AUTO_DRIVE_SPEED)
+                    .withTimeout(AUTO_DRIVE_TIMEOUT_SECONDS)),
+            AutoBuilder.stage("Spin up", ballSubsystem.spinUpUntilReadyCommand()))
+        // Launch until the hopper is empty, then stop the launcher
+        .then("Launch",
+            ballSubsystem.rapidFireUntilEmptyCommand(AUTO_EMPTY_HOPPER_SECONDS)
+                .withTimeout(AUTO_LAUNCH_SECONDS))
+        .build();
   }
 }
@@ -0,0 +1,131 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.sim;
+
+import java.util.Random;
+
+import edu.wpi.first.wpilibj.PS5Controller;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import frc.robot.util.LoopTimer;
+import static frc.robot.Constants.OperatorConstants.*;
+
+/**
+ * Runs scripted matches against the simulated robot as fast as the CPU allows.
+ * The simulation clock is paused and then stepped one robot period at a time
+ * from a separate thread. Each step waits for the robot loop to finish, so the
+ * robot code sees exactly the same timing it would in real time.
+ *
+ * <p>
+ * Each scenario is a short disabled period, a full autonomous period and a
+ * teleop period with randomized (but seeded, so repeatable) driving and
+ * launching on the controller. Enable with the KITBOT_HEADLESS environment
+ * variable; KITBOT_HEADLESS_RUNS sets the number of scenarios. From Gradle,
+ * run {@code ./gradlew simulateJava -Pheadless -PheadlessRuns=100}.
+ */
+public final class HeadlessSimulation {
+  private static final double DISABLED_SECONDS = 1;
+  private static final double AUTONOMOUS_SECONDS = 15;
+  private static final double TELEOP_SECONDS = 20;
+  private static final int DEFAULT_RUNS = 10;
+
+  private HeadlessSimulation() {}
+
+  // Returns true if the robot was started in headless mode
+  public static boolean isRequested() {
+    return System.getenv("KITBOT_HEADLESS") != null;
+  }
+
+  // Pauses the simulation clock and starts stepping scenarios on a background
+  // thread. Exits the program when all scenarios have run.
+  public static void start() {
+    String runsValue = System.getenv("KITBOT_HEADLESS_RUNS");
+    int runs = runsValue == null ? DEFAULT_RUNS : Integer.parseInt(runsValue);
+
+    SimHooks.pauseTiming();
+    Thread thread = new Thread(() -> run(runs), "Headless simulation");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private static void run(int runs) {
+    DriverStationSim.setDsAttached(true);
+    DriverStationSim.setJoystickAxisCount(CONTROLLER_PORT, 6);
+    DriverStationSim.setJoystickButtonCount(CONTROLLER_PORT, 14);
+
+    long wallStart = System.nanoTime();
+    long steps = 0;
+    for (int run = 0; run < runs; run++) {
+      Random random = new Random(run);
+
+      setMode(false, false);
+      steps += step(DISABLED_SECONDS);
+
+      setMode(true, true);
+      steps += step(AUTONOMOUS_SECONDS);
+
+      setMode(true, false);
+      steps += driveTeleop(random);
+    }
+    setMode(false, false);
+    step(TimedRobot.kDefaultPeriod);
+
+    double wallSeconds = (System.nanoTime() - wallStart) / 1e9;
+    double simSeconds = steps * TimedRobot.kDefaultPeriod;
+    System.out.printf("Headless simulation: %d scenarios, %.0f simulated seconds in %.1f s (%.0fx real time),"
+        + " %d loop overruns%n", runs, simSeconds, wallSeconds, simSeconds / wallSeconds,
+        LoopTimer.getOverrunCount());
+    System.exit(0);
+  }
+
+  // Drives around and launches with randomized stick and button inputs for the
+  // teleop period
+  private static long driveTeleop(Random random) {
+    long steps = 0;
+    double elapsed = 0;
+    while (elapsed < TELEOP_SECONDS) {
+      // Hold a random set of inputs for a random time between 0.2 and 2 seconds
+      double holdSeconds = 0.2 + random.nextDouble() * 1.8;
+      DriverStationSim.setJoystickAxis(CONTROLLER_PORT, PS5Controller.Axis.kLeftY.value,
+          random.nextDouble() * 2 - 1);
+      DriverStationSim.setJoystickAxis(CONTROLLER_PORT, PS5Controller.Axis.kRightX.value,
+          random.nextDouble() * 2 - 1);
+      int buttons = 0;
+      if (random.nextDouble() < 0.3) {
+        buttons |= 1 << (PS5Controller.Button.kR1.value - 1);
+      } else if (random.nextDouble() < 0.3) {
+        buttons |= 1 << (PS5Controller.Button.kL1.value - 1);
+      }
+      DriverStationSim.setJoystickButtons(CONTROLLER_PORT, buttons);
+      DriverStationSim.notifyNewData();
+
+      steps += step(holdSeconds);
+      elapsed += holdSeconds;
+    }
+    DriverStationSim.setJoystickAxis(CONTROLLER_PORT, PS5Controller.Axis.kLeftY.value, 0);
+    DriverStationSim.setJoystickAxis(CONTROLLER_PORT, PS5Controller.Axis.kRightX.value, 0);
+    DriverStationSim.setJoystickButtons(CONTROLLER_PORT, 0);
+    DriverStationSim.notifyNewData();
+    return steps;
+  }
+
+  private static void setMode(boolean enabled, boolean autonomous) {
+    DriverStationSim.setAutonomous(autonomous);
+    DriverStationSim.setTest(false);
+    DriverStationSim.setEnabled(enabled);
+    DriverStationSim.notifyNewData();
+  }
+
+  // Steps the simulation clock one robot period at a time. Each step returns
+  // once the robot loop (and any other notifiers) have finished running.
+  private static long step(double seconds) {
+    long steps = Math.round(seconds / TimedRobot.kDefaultPeriod);
+    for (long i = 0; i < steps; i++) {
+      SimHooks.stepTiming(TimedRobot.kDefaultPeriod);
+    }
+    return steps;
+  }
+}
@@ -0,0 +1,171 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.sim;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import frc.robot.util.CachedMotorOutput;
+import frc.robot.util.InputLog;
+import static frc.robot.Constants.ReplayConstants.*;
+
+/**
+ * Replays a recorded input log through the robot code as fast as the CPU
+ * allows, and compares the outputs the code commands against the recorded
+ * ones. Like {@link HeadlessSimulation}, the simulation clock is paused and
+ * stepped one robot period at a time from a separate thread. Before each step
+ * the recorded driver station state and controller inputs are set on the
+ * simulated driver station, and the recorded input values are handed to the
+ * {@link InputLog}.
+ *
+ * <p>
+ * Time is replayed on the 20 ms loop grid rather than at the exact recorded
+ * loop times, so logic that depends on loop timing jitter can differ; any
+ * difference shows up in the output comparison. The program exits with status
+ * 0 if every output matched and 1 otherwise, so a replay can be used to bisect
+ * a behavior change. Enable with the KITBOT_REPLAY environment variable set to
+ * the log file. From Gradle, run
+ * {@code ./gradlew simulateJava -Preplay=path/to/inputs.kbin}.
+ */
+public final class LogReplay {
+  private LogReplay() {}
+
+  // Returns true if the robot was started to replay a log
+  public static boolean isRequested() {
+    return System.getenv("KITBOT_REPLAY") != null;
+  }
+
+  // Opens the log, pauses the simulation clock and starts replaying on a
+  // background thread. Exits the program when the log has been replayed.
+  public static void start() {
+    File file = new File(System.getenv("KITBOT_REPLAY"));
+    InputLog.Reader reader;
+    try {
+      reader = new InputLog.Reader(file);
+    } catch (IOException e) {
+      System.err.println("Could not open input log " + file + ": " + e);
+      System.exit(2);
+      return;
+    }
+    InputLog.startReplay(reader.getInputNames());
+
+    SimHooks.pauseTiming();
+    Thread thread = new Thread(() -> run(reader), "Log replay");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private static void run(InputLog.Reader reader) {
+    // Match the recorded outputs to this code's outputs by name
+    List<String> outputNames = reader.getOutputNames();
+    List<CachedMotorOutput> allOutputs = CachedMotorOutput.getAll();
+    CachedMotorOutput[] outputs = new CachedMotorOutput[outputNames.size()];
+    for (int i = 0; i < outputs.length; i++) {
+      for (CachedMotorOutput output : allOutputs) {
+        if (output.getName().equals(outputNames.get(i))) {
+          outputs[i] = output;
+        }
+      }
+      if (outputs[i] == null) {
+        System.out.println("Log replay: output " + outputNames.get(i) + " no longer exists");
+      }
+    }
+
+    int port = reader.getJoystickPort();
+    int outputOffset = reader.getOutputOffset();
+    long wallStart = System.nanoTime();
+    long records = 0;
+    long differingRecords = 0;
+    long firstDifferingLoop = -1;
+    long reported = 0;
+    double previousLoop = Double.NaN;
+    double[] record = new double[reader.getWidth()];
+
+    try {
+      while (reader.next(record)) {
+        if (!Double.isNaN(previousLoop) && record[InputLog.LOOP] != previousLoop + 1) {
+          System.out.printf("Log replay: loops %.0f to %.0f were not recorded%n",
+              previousLoop + 1, record[InputLog.LOOP] - 1);
+        }
+        previousLoop = record[InputLog.LOOP];
+
+        applyDriverStation(record, port);
+        InputLog.setReplayRecord(record);
+        SimHooks.stepTiming(TimedRobot.kDefaultPeriod);
+        records++;
+
+        boolean differs = false;
+        for (int i = 0; i < outputs.length; i++) {
+          if (outputs[i] == null) {
+            continue;
+          }
+          double recorded = record[outputOffset + i];
+          double replayed = outputs[i].getSetpoint();
+          if (Math.abs(recorded - replayed) > REPLAY_OUTPUT_TOLERANCE
+              || Double.isNaN(recorded) != Double.isNaN(replayed)) {
+            differs = true;
+            if (reported < REPLAY_MAX_REPORTED_DIFFERENCES) {
+              reported++;
+              System.out.printf("Log replay: loop %.0f (%.3f s) %s recorded %.6f, replayed %.6f%n",
+                  record[InputLog.LOOP], record[InputLog.TIMESTAMP], outputNames.get(i), recorded, replayed);
+            }
+          }
+        }
+        if (differs) {
+          differingRecords++;
+          if (firstDifferingLoop < 0) {
+            firstDifferingLoop = (long) record[InputLog.LOOP];
+          }
+        }
+      }
+      reader.close();
+    } catch (IOException e) {
+      System.err.println("Log replay: could not read input log: " + e);
+    }
+
+    double wallSeconds = (System.nanoTime() - wallStart) / 1e9;
+    double simSeconds = records * TimedRobot.kDefaultPeriod;
+    System.out.printf("Log replay: %d loops, %.0f simulated seconds in %.1f s (%.0fx real time)%n",
+        records, simSeconds, wallSeconds, simSeconds / wallSeconds);
+    if (differingRecords == 0) {
+      System.out.println("Log replay: all outputs matched the recording");
+      System.exit(0);
+    }
+    System.out.printf("Log replay: outputs differed in %d loops, first at loop %d%n",
+        differingRecords, firstDifferingLoop);
+    System.exit(1);
+  }
+
+  // Sets the simulated driver station to the recorded state and controller
+  // inputs, to be picked up when the next loop refreshes its data
+  private static void applyDriverStation(double[] record, int port) {
+    int flags = (int) record[InputLog.DS_FLAGS];
+    DriverStationSim.setEnabled((flags & InputLog.ENABLED) != 0);
+    DriverStationSim.setAutonomous((flags & InputLog.AUTONOMOUS) != 0);
+    DriverStationSim.setTest((flags & InputLog.TEST) != 0);
+    DriverStationSim.setEStop((flags & InputLog.ESTOPPED) != 0);
+    DriverStationSim.setDsAttached((flags & InputLog.DS_ATTACHED) != 0);
+    DriverStationSim.setFmsAttached((flags & InputLog.FMS_ATTACHED) != 0);
+    DriverStationSim.setAllianceStationId(InputLog.Reader.getAllianceStation(record));
+    DriverStationSim.setMatchTime(record[InputLog.MATCH_TIME]);
+
+    int axisCount = (int) record[InputLog.AXIS_COUNT];
+    DriverStationSim.setJoystickAxisCount(port, axisCount);
+    for (int i = 0; i < axisCount; i++) {
+      DriverStationSim.setJoystickAxis(port, i, record[InputLog.AXES + i]);
+    }
+    int buttonCount = (int) record[InputLog.BUTTON_COUNT];
+    int buttons = (int) record[InputLog.BUTTONS];
+    DriverStationSim.setJoystickButtonCount(port, buttonCount);
+    for (int i = 0; i < buttonCount; i++) {
+      DriverStationSim.setJoystickButton(port, i + 1, (buttons & (1 << i)) != 0);
+    }
+    DriverStationSim.notifyNewData();
+  }
+}
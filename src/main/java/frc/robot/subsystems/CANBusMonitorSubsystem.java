@@ -0,0 +1,87 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.hal.can.CANJNI;
+import edu.wpi.first.hal.can.CANStatus;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.util.LoopTimer;
+import frc.robot.util.TelemetryGroup;
+import static frc.robot.Constants.CANConstants.*;
+import static frc.robot.Constants.TelemetryConstants.DIAGNOSTICS_TELEMETRY_PERIOD_SECONDS;
+
+/**
+ * Watches the health of the CAN bus. Every loop it reads the bus status into a
+ * reused object and keeps the peak utilization. Every CAN_MONITOR_PERIOD_SECONDS
+ * it publishes the average and peak utilization over the period, the current
+ * transmit and receive error counts, and how many frames could not be sent
+ * because the transmit buffer was full. The bus-off count is published whenever
+ * it changes.
+ */
+public class CANBusMonitorSubsystem extends SubsystemBase {
+  private final CANStatus status = new CANStatus();
+
+  private final LoopTimer.Section periodicTiming = LoopTimer.section("Subsystem/CANBusMonitor");
+
+  // Dashboard values, sent only when they change
+  private final TelemetryGroup telemetry = new TelemetryGroup("CAN", DIAGNOSTICS_TELEMETRY_PERIOD_SECONDS);
+  private final TelemetryGroup.DoubleField busOffField = telemetry.addDouble("Bus off count");
+  private final TelemetryGroup.DoubleField utilizationField = telemetry.addDouble("Utilization %");
+  private final TelemetryGroup.DoubleField peakUtilizationField = telemetry.addDouble("Peak utilization %");
+  private final TelemetryGroup.DoubleField txErrorsField = telemetry.addDouble("TX errors");
+  private final TelemetryGroup.DoubleField rxErrorsField = telemetry.addDouble("RX errors");
+  private final TelemetryGroup.DoubleField droppedFramesField =
+      telemetry.addDouble("Dropped TX frames per second");
+
+  private double periodStartTime = Timer.getFPGATimestamp();
+  private double utilizationSum;
+  private double peakUtilization;
+  private int samples;
+  private int periodStartTxFullCount = -1;
+  private int lastBusOffCount;
+
+  public CANBusMonitorSubsystem() {
+    busOffField.set(0);
+  }
+
+  @Override
+  public void periodic() {
+    long start = periodicTiming.start();
+
+    CANJNI.getCANStatus(status);
+    double utilization = status.percentBusUtilization * 100;
+    utilizationSum += utilization;
+    peakUtilization = Math.max(peakUtilization, utilization);
+    samples++;
+    if (periodStartTxFullCount < 0) {
+      periodStartTxFullCount = status.txFullCount;
+      lastBusOffCount = status.busOffCount;
+    }
+
+    if (status.busOffCount != lastBusOffCount) {
+      lastBusOffCount = status.busOffCount;
+      busOffField.set(lastBusOffCount);
+    }
+
+    double now = Timer.getFPGATimestamp();
+    double elapsed = now - periodStartTime;
+    if (elapsed >= CAN_MONITOR_PERIOD_SECONDS) {
+      utilizationField.set(utilizationSum / samples);
+      peakUtilizationField.set(peakUtilization);
+      txErrorsField.set(status.transmitErrorCount);
+      rxErrorsField.set(status.receiveErrorCount);
+      droppedFramesField.set((status.txFullCount - periodStartTxFullCount) / elapsed);
+
+      periodStartTime = now;
+      periodStartTxFullCount = status.txFullCount;
+      utilizationSum = 0;
+      peakUtilization = 0;
+      samples = 0;
+    }
+
+    periodicTiming.stop(start);
+  }
+}
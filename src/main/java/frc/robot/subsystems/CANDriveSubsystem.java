@@ -4,25 +4,118 @@
 
 package frc.robot.subsystems;
 
+import java.util.function.BooleanSupplier;
 import java.util.function.DoubleSupplier;
 
+import com.ctre.phoenix.ParamEnum;
+import com.ctre.phoenix.motorcontrol.FeedbackDevice;
 import com.ctre.phoenix.motorcontrol.InvertType;
 import com.ctre.phoenix.motorcontrol.NeutralMode;
+import com.ctre.phoenix.motorcontrol.TalonSRXSimCollection;
+import com.ctre.phoenix.motorcontrol.can.BaseMotorController;
 import com.ctre.phoenix.motorcontrol.can.WPI_TalonSRX;
 import com.ctre.phoenix.motorcontrol.can.WPI_VictorSPX;
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusSignal;
+import com.ctre.phoenix6.hardware.Pigeon2;
+import com.ctre.phoenix6.sim.Pigeon2SimState;
 
-import edu.wpi.first.wpilibj.drive.DifferentialDrive;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.estimator.DifferentialDrivePoseEstimator;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.DifferentialDriveKinematics;
+import edu.wpi.first.units.measure.Angle;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.simulation.DifferentialDrivetrainSim;
+import edu.wpi.first.wpilibj.smartdashboard.Field2d;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.util.CachedMotorOutput;
+import frc.robot.util.DeviceConfigurator;
+import frc.robot.util.HighRateSampler;
+import frc.robot.util.InputLatency;
+import frc.robot.util.LoggedInput;
+import frc.robot.util.LoopTimer;
+import frc.robot.util.StatusFrameProfile;
+import frc.robot.util.TelemetryGroup;
+import frc.robot.util.TunableBoolean;
 import static frc.robot.Constants.DriveConstants.*;
+import static frc.robot.Constants.OperatorConstants.LATE_SAMPLED_DRIVE;
+import static frc.robot.Constants.TelemetryConstants.DRIVE_TELEMETRY_PERIOD_SECONDS;
 
 public class CANDriveSubsystem extends SubsystemBase {
   private final WPI_TalonSRX leftLeader;
   private final WPI_VictorSPX leftFollower;
   private final WPI_TalonSRX rightLeader;
   private final WPI_VictorSPX rightFollower;
+  private final Pigeon2 pigeon;
+  private final StatusSignal<Angle> yaw;
 
-  private final DifferentialDrive drive;
+  // Leader outputs that skip calling set() when the setpoint has not changed
+  private final CachedMotorOutput leftOutputWriter;
+  private final CachedMotorOutput rightOutputWriter;
+
+  // Last computed wheel outputs. Kept in fields so the drive path does not
+  // allocate a new wheel speeds object every loop like DifferentialDrive does.
+  private double leftOutput;
+  private double rightOutput;
+
+  // Scale applied to both wheel outputs, as set by the power budget. The
+  // Talon SRX stores its current limits in flash, so the power budget only
+  // scales the output and the limits stay at their configured values.
+  private double outputScale = 1.0;
+
+  // Sensor readings, recorded by the input log so they can be replayed
+  private final LoggedInput leftVoltageInput;
+  private final LoggedInput rightVoltageInput;
+  private final LoggedInput leftCurrentInput;
+  private final LoggedInput rightCurrentInput;
+  private final LoggedInput leftSupplyCurrentInput;
+  private final LoggedInput rightSupplyCurrentInput;
+  // Wheel distances as of the last odometry sample, read once odometry has
+  // been updated each loop. Recorded because autonomous ends its drive on
+  // them.
+  private final LoggedInput leftDistanceInput;
+  private final LoggedInput rightDistanceInput;
+
+  // Wheel distances and heading, sampled several times per loop on their own
+  // thread, and the pose estimate built from them
+  private final HighRateSampler odometrySampler;
+  private final double[] odometrySample;
+  private final DifferentialDrivePoseEstimator poseEstimator;
+  private final Field2d field = new Field2d();
+  private boolean odometryStarted;
+  private double lastLeftDistance;
+  private double lastRightDistance;
+  private double lastYawDegrees;
+
+  // Average wheel distance when the current drive distance command started
+  private double driveDistanceStart;
+
+  private final LoopTimer.Section periodicTiming = LoopTimer.section("Subsystem/CANDrive");
+
+  // Dashboard values, sent only when they change
+  private final TelemetryGroup telemetry = new TelemetryGroup("Drive", DRIVE_TELEMETRY_PERIOD_SECONDS);
+  private final TelemetryGroup.DoubleField leftDistanceField = telemetry.addDouble("Left distance m");
+  private final TelemetryGroup.DoubleField rightDistanceField = telemetry.addDouble("Right distance m");
+  private final TelemetryGroup.DoubleField headingField = telemetry.addDouble("Heading deg");
+  private final TelemetryGroup.DoubleField droppedSamplesField =
+      telemetry.addDouble("Dropped odometry samples");
+
+  // When enabled, joystick drive inputs are read at the end of the loop, right
+  // before the motors are written, instead of whenever the command runs
+  private final TunableBoolean lateSampledDrive = new TunableBoolean("Late-sampled drive", LATE_SAMPLED_DRIVE);
+  private DoubleSupplier lateXSpeed;
+  private DoubleSupplier lateZRotation;
+
+  // Physics model of the drivetrain, only created in simulation
+  private DifferentialDrivetrainSim driveSim;
+  private TalonSRXSimCollection leftLeaderSim;
+  private TalonSRXSimCollection rightLeaderSim;
+  private Pigeon2SimState pigeonSim;
 
   public CANDriveSubsystem() {
     // Create motor controllers
@@ -30,33 +123,425 @@ public class CANDriveSubsystem extends SubsystemBase {
     leftFollower = new WPI_VictorSPX(LEFT_FOLLOWER_ID);
     rightLeader = new WPI_TalonSRX(RIGHT_LEADER_ID);
     rightFollower = new WPI_VictorSPX(RIGHT_FOLLOWER_ID);
+    pigeon = new Pigeon2(PIGEON_ID);
+    yaw = pigeon.getYaw();
 
-    // Coast mode on all drive motors
-    leftLeader.setNeutralMode(NeutralMode.Coast);
-    leftFollower.setNeutralMode(NeutralMode.Coast);
-    rightLeader.setNeutralMode(NeutralMode.Coast);
-    rightFollower.setNeutralMode(NeutralMode.Coast);
+    leftOutputWriter = CachedMotorOutput.percentOutput("Drive left", leftLeader,
+        DRIVE_OUTPUT_EPSILON, DRIVE_OUTPUT_KEEP_ALIVE_SECONDS);
+    rightOutputWriter = CachedMotorOutput.percentOutput("Drive right", rightLeader,
+        DRIVE_OUTPUT_EPSILON, DRIVE_OUTPUT_KEEP_ALIVE_SECONDS);
 
-    // Set up differential drive with Talon SRX controllers
-    drive = new DifferentialDrive(leftLeader, rightLeader);
+    leftVoltageInput = LoggedInput.of("Drive/Left voltage", leftLeader::getMotorOutputVoltage);
+    rightVoltageInput = LoggedInput.of("Drive/Right voltage", rightLeader::getMotorOutputVoltage);
+    leftCurrentInput = LoggedInput.of("Drive/Left current", leftLeader::getStatorCurrent);
+    rightCurrentInput = LoggedInput.of("Drive/Right current", rightLeader::getStatorCurrent);
+    leftSupplyCurrentInput = LoggedInput.of("Drive/Left supply current", leftLeader::getSupplyCurrent);
+    rightSupplyCurrentInput = LoggedInput.of("Drive/Right supply current", rightLeader::getSupplyCurrent);
+    leftDistanceInput = LoggedInput.of("Drive/Left distance", () -> lastLeftDistance);
+    rightDistanceInput = LoggedInput.of("Drive/Right distance", () -> lastRightDistance);
 
-    // Configure followers to follow their leaders
-    leftFollower.follow(leftLeader);
-    leftFollower.setInverted(InvertType.FollowMaster);
-    rightFollower.follow(rightLeader);
-    rightFollower.setInverted(InvertType.FollowMaster);
+    // The leaders are written to directly instead of through DifferentialDrive,
+    // so enable their own motor safety to stop the drive if the loop stops
+    // commanding it. The safety is fed every loop even when the set() call is
+    // skipped because the output did not change.
+    leftLeader.setSafetyEnabled(true);
+    rightLeader.setSafetyEnabled(true);
 
+    // Sample the encoders and gyro faster than the loop, so quick turns are
+    // integrated accurately. The estimator is reset to the first sample.
+    odometrySampler = new HighRateSampler("Odometry", ODOMETRY_BUFFER_CAPACITY,
+        () -> leftLeader.getSelectedSensorPosition() * DRIVE_METERS_PER_COUNT,
+        () -> rightLeader.getSelectedSensorPosition() * DRIVE_METERS_PER_COUNT,
+        () -> yaw.refresh().getValueAsDouble());
+    odometrySample = new double[odometrySampler.getWidth()];
+    poseEstimator = new DifferentialDrivePoseEstimator(
+        new DifferentialDriveKinematics(DRIVE_TRACK_WIDTH_METERS), Rotation2d.kZero, 0, 0, Pose2d.kZero);
+    SmartDashboard.putData("Field", field);
+
+    if (RobotBase.isSimulation()) {
+      driveSim = DifferentialDrivetrainSim.createKitbotSim(DRIVE_SIM_MOTORS, DRIVE_SIM_GEARING,
+          DRIVE_SIM_WHEEL_SIZE, null);
+      leftLeaderSim = leftLeader.getSimCollection();
+      rightLeaderSim = rightLeader.getSimCollection();
+      pigeonSim = pigeon.getSimState();
+    }
+
+    odometrySampler.start(ODOMETRY_SAMPLE_PERIOD_SECONDS);
+  }
+
+  // Adds the drive motor controllers to the boot-time device configuration, so
+  // that they are configured at the same time as the other devices. Status
+  // frame periods are set from the given profile.
+  public void addDeviceConfiguration(DeviceConfigurator configurator, StatusFrameProfile profile) {
     // Invert left side so that positive values drive both sides forward
-    leftLeader.setInverted(true);
+    configurator.add("Drive left leader",
+        () -> {
+          leftLeader.setNeutralMode(NeutralMode.Coast);
+          leftLeader.enableCurrentLimit(true);
+          leftLeader.setInverted(true);
+          leftLeader.setSensorPhase(LEFT_ENCODER_SENSOR_PHASE);
+          profile.applyTo(leftLeader, CAN_CONFIG_TIMEOUT_MS);
+        },
+        () -> isLeaderUpToDate(leftLeader),
+        () -> configureLeader(leftLeader));
+    configurator.add("Drive right leader",
+        () -> {
+          rightLeader.setNeutralMode(NeutralMode.Coast);
+          rightLeader.enableCurrentLimit(true);
+          rightLeader.setSensorPhase(RIGHT_ENCODER_SENSOR_PHASE);
+          profile.applyTo(rightLeader, CAN_CONFIG_TIMEOUT_MS);
+        },
+        () -> isLeaderUpToDate(rightLeader),
+        () -> configureLeader(rightLeader));
+
+    // Configure followers to follow their leaders. Victor SPX controllers have
+    // no current limit, so there is nothing persistent to write.
+    configurator.add("Drive left follower",
+        () -> configureFollower(leftFollower, leftLeader, profile), null, null);
+    configurator.add("Drive right follower",
+        () -> configureFollower(rightFollower, rightLeader, profile), null, null);
+
+    // Send the yaw as often as odometry samples it, and nothing the robot does
+    // not use
+    configurator.add("Pigeon",
+        () -> {
+          BaseStatusSignal.setUpdateFrequencyForAll(1 / ODOMETRY_SAMPLE_PERIOD_SECONDS, yaw);
+          profile.applyTo(pigeon);
+        },
+        null, null);
+  }
+
+  // Reads back the selected sensor and current limit settings of a Talon SRX
+  // and returns true if they already match the quadrature encoder and
+  // DRIVE_MOTOR_CURRENT_LIMIT
+  private static boolean isLeaderUpToDate(WPI_TalonSRX talon) {
+    return talon.configGetParameter(ParamEnum.eFeedbackSensorType, 0, CAN_CONFIG_TIMEOUT_MS)
+        == FeedbackDevice.QuadEncoder.value
+        && talon.configGetParameter(ParamEnum.eContinuousCurrentLimitAmps, 0, CAN_CONFIG_TIMEOUT_MS)
+        == DRIVE_MOTOR_CURRENT_LIMIT
+        && talon.configGetParameter(ParamEnum.ePeakCurrentLimitAmps, 0, CAN_CONFIG_TIMEOUT_MS)
+            == DRIVE_MOTOR_CURRENT_LIMIT
+        && talon.configGetParameter(ParamEnum.ePeakCurrentLimitMs, 0, CAN_CONFIG_TIMEOUT_MS) == 0;
+  }
+
+  // Writes the selected sensor and current limit settings of a Talon SRX,
+  // which it stores in flash
+  private static void configureLeader(WPI_TalonSRX talon) {
+    talon.configSelectedFeedbackSensor(FeedbackDevice.QuadEncoder, 0, CAN_CONFIG_TIMEOUT_MS);
+    talon.configContinuousCurrentLimit(DRIVE_MOTOR_CURRENT_LIMIT, CAN_CONFIG_TIMEOUT_MS);
+    talon.configPeakCurrentLimit(DRIVE_MOTOR_CURRENT_LIMIT, CAN_CONFIG_TIMEOUT_MS);
+    talon.configPeakCurrentDuration(0, CAN_CONFIG_TIMEOUT_MS);
+  }
+
+  private static void configureFollower(WPI_VictorSPX follower, BaseMotorController leader,
+      StatusFrameProfile profile) {
+    follower.setNeutralMode(NeutralMode.Coast);
+    follower.follow(leader);
+    follower.setInverted(InvertType.FollowMaster);
+    profile.applyTo(follower, CAN_CONFIG_TIMEOUT_MS);
   }
 
   @Override
   public void periodic() {
+    long start = periodicTiming.start();
+    updateOdometry();
+    // The first read of the distances this loop, so they are taken from the
+    // samples just consumed
+    leftDistanceField.set(getLeftDistance());
+    rightDistanceField.set(getRightDistance());
+    headingField.set(lastYawDegrees);
+    droppedSamplesField.set(getOdometryDroppedCount());
+    periodicTiming.stop(start);
+  }
+
+  // Feeds every sample taken since the last loop into the pose estimator, in
+  // order, each at the time it was taken
+  private void updateOdometry() {
+    while (odometrySampler.poll(odometrySample)) {
+      lastLeftDistance = odometrySample[1];
+      lastRightDistance = odometrySample[2];
+      lastYawDegrees = odometrySample[3];
+      if (!odometryStarted) {
+        odometryStarted = true;
+        resetPose(Pose2d.kZero);
+        continue;
+      }
+      poseEstimator.updateWithTime(odometrySample[0], Rotation2d.fromDegrees(lastYawDegrees),
+          lastLeftDistance, lastRightDistance);
+    }
+    field.setRobotPose(poseEstimator.getEstimatedPosition());
+  }
+
+  // The robot's estimated position on the field
+  public Pose2d getPose() {
+    return poseEstimator.getEstimatedPosition();
+  }
+
+  // Tells the pose estimator where the robot is now, keeping the current wheel
+  // distances and heading as the reference
+  public void resetPose(Pose2d pose) {
+    poseEstimator.resetPosition(Rotation2d.fromDegrees(lastYawDegrees), lastLeftDistance,
+        lastRightDistance, pose);
+  }
+
+  // Distance the left wheels have travelled in meters, as of the last sample
+  public double getLeftDistance() {
+    return leftDistanceInput.get();
+  }
+
+  // Distance the right wheels have travelled in meters, as of the last sample
+  public double getRightDistance() {
+    return rightDistanceInput.get();
+  }
+
+  // Average distance both sides have travelled in meters, as of the last
+  // sample
+  public double getAverageDistance() {
+    return (getLeftDistance() + getRightDistance()) / 2;
+  }
+
+  // Number of odometry samples dropped because the loop fell behind
+  public long getOdometryDroppedCount() {
+    return odometrySampler.getDroppedCount();
+  }
+
+  @Override
+  public void simulationPeriodic() {
+    double busVoltage = RobotController.getBatteryVoltage();
+    leftLeaderSim.setBusVoltage(busVoltage);
+    rightLeaderSim.setBusVoltage(busVoltage);
+
+    // The lead voltage is what the controller applies to the motor after
+    // inversion, so the inverted left side is negated to make positive drive
+    // the robot forward
+    driveSim.setInputs(-leftLeaderSim.getMotorOutputLeadVoltage(),
+        rightLeaderSim.getMotorOutputLeadVoltage());
+    driveSim.update(0.02);
+
+    // Each leader sees the current of one of the two motors on its side. The
+    // controller draws that current from the battery only for the fraction of
+    // the time it is switched on.
+    double leftCurrent = driveSim.getLeftCurrentDrawAmps() / 2;
+    double rightCurrent = driveSim.getRightCurrentDrawAmps() / 2;
+    double leftDuty = busVoltage > 0 ? Math.abs(leftLeaderSim.getMotorOutputLeadVoltage()) / busVoltage : 0;
+    double rightDuty = busVoltage > 0 ? Math.abs(rightLeaderSim.getMotorOutputLeadVoltage()) / busVoltage : 0;
+    leftLeaderSim.setStatorCurrent(leftCurrent);
+    leftLeaderSim.setSupplyCurrent(leftCurrent * leftDuty);
+    rightLeaderSim.setStatorCurrent(rightCurrent);
+    rightLeaderSim.setSupplyCurrent(rightCurrent * rightDuty);
+
+    // The encoders count the motor's own direction, so the inverted left side
+    // counts down when driving forward; the Talon inverts it back
+    leftLeaderSim.setQuadratureRawPosition((int) (-driveSim.getLeftPositionMeters() / DRIVE_METERS_PER_COUNT));
+    leftLeaderSim.setQuadratureVelocity(
+        (int) (-driveSim.getLeftVelocityMetersPerSecond() / DRIVE_METERS_PER_COUNT / 10));
+    rightLeaderSim.setQuadratureRawPosition((int) (driveSim.getRightPositionMeters() / DRIVE_METERS_PER_COUNT));
+    rightLeaderSim.setQuadratureVelocity(
+        (int) (driveSim.getRightVelocityMetersPerSecond() / DRIVE_METERS_PER_COUNT / 10));
+    pigeonSim.setSupplyVoltage(busVoltage);
+    pigeonSim.setRawYaw(driveSim.getHeading().getDegrees());
+  }
+
+  // Total current drawn by the simulated drivetrain, used for battery sag
+  public double getSimulatedCurrentDraw() {
+    return driveSim == null ? 0 : driveSim.getCurrentDrawAmps();
+  }
+
+  // Drives the robot with arcade controls. Uses the same deadband and input
+  // squaring as DifferentialDrive.arcadeDrive, but writes straight to the leader
+  // controllers without allocating.
+  public void arcadeDrive(double xSpeed, double zRotation) {
+    xSpeed = MathUtil.applyDeadband(MathUtil.clamp(xSpeed, -1.0, 1.0), DRIVE_DEADBAND);
+    zRotation = MathUtil.applyDeadband(MathUtil.clamp(zRotation, -1.0, 1.0), DRIVE_DEADBAND);
+
+    // Square the inputs (while preserving the sign) to increase fine control
+    // while permitting full power
+    xSpeed = Math.copySign(xSpeed * xSpeed, xSpeed);
+    zRotation = Math.copySign(zRotation * zRotation, zRotation);
+
+    leftOutput = xSpeed - zRotation;
+    rightOutput = xSpeed + zRotation;
+
+    // Find the maximum possible value of (throttle + turn) along the vector
+    // that the joystick is pointing, then desaturate the wheel speeds
+    double greaterInput = Math.max(Math.abs(xSpeed), Math.abs(zRotation));
+    double lesserInput = Math.min(Math.abs(xSpeed), Math.abs(zRotation));
+    if (greaterInput == 0.0) {
+      leftOutput = 0.0;
+      rightOutput = 0.0;
+    } else {
+      double saturatedInput = (greaterInput + lesserInput) / greaterInput;
+      leftOutput /= saturatedInput;
+      rightOutput /= saturatedInput;
+    }
+
+    writeOutputs();
+  }
+
+  // Drives the robot with curvature controls, where the rotation input sets the
+  // curvature of the robot's path rather than its rate of heading change. This
+  // makes the robot more controllable at high speeds. Uses the same math as
+  // DifferentialDrive.curvatureDrive without allocating.
+  public void curvatureDrive(double xSpeed, double zRotation, boolean allowTurnInPlace) {
+    xSpeed = MathUtil.applyDeadband(MathUtil.clamp(xSpeed, -1.0, 1.0), DRIVE_DEADBAND);
+    zRotation = MathUtil.applyDeadband(MathUtil.clamp(zRotation, -1.0, 1.0), DRIVE_DEADBAND);
+
+    if (allowTurnInPlace) {
+      leftOutput = xSpeed - zRotation;
+      rightOutput = xSpeed + zRotation;
+    } else {
+      leftOutput = xSpeed - Math.abs(xSpeed) * zRotation;
+      rightOutput = xSpeed + Math.abs(xSpeed) * zRotation;
+    }
+
+    // Desaturate wheel speeds
+    double maxMagnitude = Math.max(Math.abs(leftOutput), Math.abs(rightOutput));
+    if (maxMagnitude > 1.0) {
+      leftOutput /= maxMagnitude;
+      rightOutput /= maxMagnitude;
+    }
+
+    writeOutputs();
+  }
+
+  // A method to stop the drive motors
+  public void stop() {
+    leftOutput = 0.0;
+    rightOutput = 0.0;
+    writeOutputs();
+  }
+
+  // Sends the last computed outputs to the leaders if they changed, and feeds
+  // the motor safety watchdog
+  private void writeOutputs() {
+    // The motor safety stops a leader without going through the cache when
+    // the loop stalls, so resend its output once the loop is back
+    if (!leftLeader.isAlive()) {
+      leftOutputWriter.invalidate();
+    }
+    if (!rightLeader.isAlive()) {
+      rightOutputWriter.invalidate();
+    }
+    leftOutputWriter.set(leftOutput * outputScale);
+    rightOutputWriter.set(rightOutput * outputScale);
+    leftLeader.feed();
+    rightLeader.feed();
+  }
+
+  // Sets the scale applied to both wheel outputs from the next drive call on
+  public void setOutputScale(double scale) {
+    outputScale = scale;
+  }
+
+  public double getOutputScale() {
+    return outputScale;
+  }
+
+  // Voltage currently applied by the left leader
+  public double getLeftOutputVoltage() {
+    return leftVoltageInput.get();
+  }
+
+  // Voltage currently applied by the right leader
+  public double getRightOutputVoltage() {
+    return rightVoltageInput.get();
+  }
+
+  // Stator current of the left leader in amps
+  public double getLeftCurrent() {
+    return leftCurrentInput.get();
+  }
+
+  // Stator current of the right leader in amps
+  public double getRightCurrent() {
+    return rightCurrentInput.get();
+  }
+
+  // Current the left leader draws from the battery in amps. Lower than the
+  // stator current at partial output.
+  public double getLeftSupplyCurrent() {
+    return leftSupplyCurrentInput.get();
+  }
+
+  // Current the right leader draws from the battery in amps
+  public double getRightSupplyCurrent() {
+    return rightSupplyCurrentInput.get();
+  }
+
+  // Percent output last commanded on the left side
+  public double getLeftSetpoint() {
+    return leftOutputWriter.getSetpoint();
+  }
+
+  // Percent output last commanded on the right side
+  public double getRightSetpoint() {
+    return rightOutputWriter.getSetpoint();
   }
 
   // Command factory to create command to drive the robot with joystick inputs.
   public Command driveArcade(DoubleSupplier xSpeed, DoubleSupplier zRotation) {
     return this.run(
-        () -> drive.arcadeDrive(xSpeed.getAsDouble(), zRotation.getAsDouble()));
+        () -> arcadeDrive(xSpeed.getAsDouble(), zRotation.getAsDouble()));
+  }
+
+  // Command factory to create command to drive the robot with joystick inputs,
+  // measuring how old the inputs are when they reach the motors. When late
+  // sampling is enabled, the command only arms the drive and the inputs are
+  // read in flushLateSampledDrive() at the end of the loop.
+  public Command driveArcadeLateSampled(DoubleSupplier xSpeed, DoubleSupplier zRotation) {
+    return this.runEnd(
+        () -> {
+          if (lateSampledDrive.get()) {
+            lateXSpeed = xSpeed;
+            lateZRotation = zRotation;
+          } else {
+            driveFromInputs(xSpeed, zRotation);
+          }
+        },
+        () -> {
+          lateXSpeed = null;
+          lateZRotation = null;
+        });
+  }
+
+  // Drives with the inputs armed by a late-sampled drive command this loop, if
+  // any. Should be called once per loop after the scheduler has run. The
+  // driver station data is refreshed first, so the newest joystick packet is
+  // used.
+  public void flushLateSampledDrive() {
+    if (lateXSpeed == null) {
+      return;
+    }
+    InputLatency.refreshNow();
+    driveFromInputs(lateXSpeed, lateZRotation);
+    // The command has to arm the drive again next loop
+    lateXSpeed = null;
+    lateZRotation = null;
+  }
+
+  private void driveFromInputs(DoubleSupplier xSpeed, DoubleSupplier zRotation) {
+    double x = xSpeed.getAsDouble();
+    double z = zRotation.getAsDouble();
+    InputLatency.markConsumed();
+    arcadeDrive(x, z);
+    InputLatency.markWritten();
+  }
+
+  // Command factory to create command to drive straight at the given speed
+  // until the encoders show that the wheels have covered the given distance in
+  // meters, and then stop. A negative speed drives backwards.
+  public Command driveDistance(double meters, double xSpeed) {
+    return this.startRun(() -> driveDistanceStart = getAverageDistance(), () -> arcadeDrive(xSpeed, 0))
+        .until(() -> Math.abs(getAverageDistance() - driveDistanceStart) >= meters)
+        .finallyDo(() -> stop());
+  }
+
+  // Command factory to create command to drive the robot with curvature
+  // controls from joystick inputs.
+  public Command driveCurvature(DoubleSupplier xSpeed, DoubleSupplier zRotation,
+      BooleanSupplier allowTurnInPlace) {
+    return this.run(
+        () -> curvatureDrive(xSpeed.getAsDouble(), zRotation.getAsDouble(),
+            allowTurnInPlace.getAsBoolean()));
   }
 }
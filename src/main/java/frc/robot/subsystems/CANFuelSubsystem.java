@@ -9,42 +9,203 @@ import com.revrobotics.spark.SparkBase.ResetMode;
 import com.revrobotics.spark.SparkLowLevel.MotorType;
 import com.revrobotics.spark.config.SparkBaseConfig.IdleMode;
 import com.revrobotics.spark.config.SparkMaxConfig;
+import com.revrobotics.sim.SparkMaxSim;
 import com.revrobotics.spark.SparkMax;
 
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.system.plant.LinearSystemId;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.FlywheelSim;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.util.CachedMotorOutput;
+import frc.robot.util.DeviceConfigurator;
+import frc.robot.util.FuelEventDetector;
+import frc.robot.util.LoggedInput;
+import frc.robot.util.LoopTimer;
+import frc.robot.util.SpinUpDetector;
+import frc.robot.util.StatusFrameProfile;
+import frc.robot.util.TelemetryGroup;
+import frc.robot.util.TunableNumber;
 import static frc.robot.Constants.FuelConstants.*;
+import static frc.robot.Constants.TelemetryConstants.FUEL_TELEMETRY_PERIOD_SECONDS;
 
 public class CANFuelSubsystem extends SubsystemBase {
+  // What the rollers are currently being used for
+  public enum FuelMode {
+    STOPPED,
+    INTAKING,
+    HOPPER_INTAKING,
+    EJECTING,
+    SPINNING_UP,
+    LAUNCHING,
+    RAPID_FIRE
+  }
+
+  // Steps of the rapid fire sequence
+  private enum RapidFireState {
+    // Launcher spinning up from rest, feeder holding fuel back
+    SPIN_UP,
+    // Feeder pushing one piece of fuel into the launcher
+    FEED,
+    // Feeder holding fuel back while the launcher recovers its speed
+    RECOVER
+  }
+
   private final SparkMax feederRoller;
   private final SparkMax intakeLauncherRoller;
 
+  // Roller outputs that skip calling setVoltage() when the voltage has not changed
+  private final CachedMotorOutput feederOutput;
+  private final CachedMotorOutput intakeLauncherOutput;
+
+  private FuelMode mode = FuelMode.STOPPED;
+
+  // Scale applied to every roller voltage, set by the power budget
+  private double outputScale = 1.0;
+  private int currentLimit = Math.max(FEEDER_MOTOR_CURRENT_LIMIT, LAUNCHER_MOTOR_CURRENT_LIMIT);
+
+  private RapidFireState rapidFireState;
+  private double rapidFireStateStartTime;
+  private double rapidFireFirstShotTime;
+  private int rapidFireShots;
+  private int rapidFireLaunchCount;
+
+  // Launch count and time of the last change, for telling when the hopper has
+  // run out of fuel
+  private int emptyCheckLaunchCount;
+  private double emptyCheckTime;
+
+  // Watches the launcher current to tell when it has reached speed
+  private final SpinUpDetector spinUpDetector;
+
+  // Counts fuel going in and out from spikes in the roller currents
+  private final FuelEventDetector fuelEventDetector;
+
+  // Sensor readings and detector results, recorded by the input log so they
+  // can be replayed
+  private final LoggedInput feederVoltageInput;
+  private final LoggedInput launcherVoltageInput;
+  private final LoggedInput feederCurrentInput;
+  private final LoggedInput launcherCurrentInput;
+  private final LoggedInput launcherReadyInput;
+  private final LoggedInput launchCountInput;
+  private final LoggedInput intakeCountInput;
+  private final LoggedInput launchRateInput;
+
+  private final LoopTimer.Section periodicTiming = LoopTimer.section("Subsystem/CANFuel");
+
+  // Dashboard values, sent only when they change
+  private final TelemetryGroup telemetry = new TelemetryGroup("Fuel", FUEL_TELEMETRY_PERIOD_SECONDS);
+  private final TelemetryGroup.DoubleField launchesField = telemetry.addDouble("Launches");
+  private final TelemetryGroup.DoubleField intakesField = telemetry.addDouble("Intakes");
+  private final TelemetryGroup.DoubleField lastLaunchIntervalField = telemetry.addDouble("Last launch interval");
+  private final TelemetryGroup.DoubleField launchRateField = telemetry.addDouble("Launches per second");
+  private final TelemetryGroup.DoubleField rapidFireShotsField = telemetry.addDouble("Rapid fire shots");
+  private final TelemetryGroup.DoubleField rapidFireRateField =
+      telemetry.addDouble("Rapid fire balls per second");
+
+  // Physics models of the rollers, only created in simulation
+  private FlywheelSim feederSim;
+  private FlywheelSim launcherSim;
+  private SparkMaxSim feederSparkSim;
+  private SparkMaxSim launcherSparkSim;
+
+  // Tunable values for various fuel operations. Each one is published to the
+  // dashboard with its default from Constants.java and only changes when the
+  // dashboard value changes, so reading them every loop is cheap. Tune the
+  // values on the dashboard, and then replace the values in Constants.java with
+  // your new values. For more information, see the Software Guide.
+  private final TunableNumber intakingFeederVoltage =
+      new TunableNumber("Intaking feeder roller value", INTAKING_FEEDER_VOLTAGE);
+  private final TunableNumber intakingIntakeVoltage =
+      new TunableNumber("Intaking intake roller value", INTAKING_INTAKE_VOLTAGE);
+  private final TunableNumber launchingFeederVoltage =
+      new TunableNumber("Launching feeder roller value", LAUNCHING_FEEDER_VOLTAGE);
+  private final TunableNumber launchingLauncherVoltage =
+      new TunableNumber("Launching launcher roller value", LAUNCHING_LAUNCHER_VOLTAGE);
+  private final TunableNumber spinUpFeederVoltage =
+      new TunableNumber("Spin-up feeder roller value", SPIN_UP_FEEDER_VOLTAGE);
+  private final TunableNumber hopperFeederVoltage =
+      new TunableNumber("Hopper feeder roller value", HOPPER_FEEDER_VOLTAGE);
+  private final TunableNumber hopperIntakeVoltage =
+      new TunableNumber("Hopper intake roller value", HOPPER_INTAKE_VOLTAGE);
+  private final TunableNumber rapidFireFeedSeconds =
+      new TunableNumber("Rapid fire feed seconds", RAPID_FIRE_FEED_SECONDS);
+  private final TunableNumber rapidFireRecoverSeconds =
+      new TunableNumber("Rapid fire recover seconds", RAPID_FIRE_RECOVER_SECONDS);
+
   /** Creates a new CANBallSubsystem. */
-  @SuppressWarnings("removal")
   public CANFuelSubsystem() {
     // create brushed motors for each of the motors on the launcher mechanism
     intakeLauncherRoller = new SparkMax(INTAKE_LAUNCHER_MOTOR_ID, MotorType.kBrushed);
     feederRoller = new SparkMax(FEEDER_MOTOR_ID, MotorType.kBrushed);
+    feederOutput = CachedMotorOutput.voltage("Feeder", feederRoller,
+        ROLLER_OUTPUT_EPSILON, ROLLER_OUTPUT_KEEP_ALIVE_SECONDS);
+    intakeLauncherOutput = CachedMotorOutput.voltage("Intake launcher", intakeLauncherRoller,
+        ROLLER_OUTPUT_EPSILON, ROLLER_OUTPUT_KEEP_ALIVE_SECONDS);
+
+    spinUpDetector = new SpinUpDetector(intakeLauncherRoller::getOutputCurrent,
+        intakeLauncherRoller::getBusVoltage, SPIN_UP_SAMPLE_PERIOD_SECONDS, SPIN_UP_MIN_SECONDS,
+        SPIN_UP_INRUSH_AMPS, SPIN_UP_SETTLED_FRACTION, SPIN_UP_SETTLED_AMPS_PER_SECOND,
+        SPIN_UP_SETTLED_VOLTS_PER_SECOND, SPIN_UP_SETTLED_SAMPLES);
+    fuelEventDetector = new FuelEventDetector(feederRoller::getOutputCurrent,
+        intakeLauncherRoller::getOutputCurrent, FUEL_EVENT_SAMPLE_PERIOD_SECONDS, FUEL_EVENT_SPIKE_AMPS,
+        FUEL_EVENT_BASELINE_FILTER, FUEL_EVENT_MIN_INTERVAL_SECONDS, FUEL_EVENT_BLANKING_SECONDS,
+        FUEL_THROUGHPUT_WINDOW_SECONDS);
 
-    // put default values for various fuel operations onto the dashboard
-    // all methods in this subsystem pull their values from the dashbaord to allow
-    // you to tune the values easily, and then replace the values in Constants.java
-    // with your new values. For more information, see the Software Guide.
-    SmartDashboard.putNumber("Intaking feeder roller value", INTAKING_FEEDER_VOLTAGE);
-    SmartDashboard.putNumber("Intaking intake roller value", INTAKING_INTAKE_VOLTAGE);
-    SmartDashboard.putNumber("Launching feeder roller value", LAUNCHING_FEEDER_VOLTAGE);
-    SmartDashboard.putNumber("Launching launcher roller value", LAUNCHING_LAUNCHER_VOLTAGE);
-    SmartDashboard.putNumber("Spin-up feeder roller value", SPIN_UP_FEEDER_VOLTAGE);
-    SmartDashboard.putNumber("Hopper feeder roller value", HOPPER_FEEDER_VOLTAGE);
-    SmartDashboard.putNumber("Hopper intake roller value", HOPPER_INTAKE_VOLTAGE);
+    feederVoltageInput = LoggedInput.of("Fuel/Feeder voltage",
+        () -> feederRoller.getAppliedOutput() * feederRoller.getBusVoltage());
+    launcherVoltageInput = LoggedInput.of("Fuel/Intake launcher voltage",
+        () -> intakeLauncherRoller.getAppliedOutput() * intakeLauncherRoller.getBusVoltage());
+    feederCurrentInput = LoggedInput.of("Fuel/Feeder current", feederRoller::getOutputCurrent);
+    launcherCurrentInput = LoggedInput.of("Fuel/Intake launcher current",
+        intakeLauncherRoller::getOutputCurrent);
+    launcherReadyInput = LoggedInput.ofBoolean("Fuel/Launcher ready", spinUpDetector::isReady);
+    launchCountInput = LoggedInput.of("Fuel/Launch count", fuelEventDetector::getLaunchCount);
+    intakeCountInput = LoggedInput.of("Fuel/Intake count", fuelEventDetector::getIntakeCount);
+    launchRateInput = LoggedInput.of("Fuel/Launch rate", fuelEventDetector::getLaunchRate);
 
+    if (RobotBase.isSimulation()) {
+      DCMotor rollerMotor = DCMotor.getCIM(1);
+      feederSim = new FlywheelSim(
+          LinearSystemId.createFlywheelSystem(rollerMotor, FEEDER_SIM_MOI, FEEDER_SIM_GEARING),
+          rollerMotor);
+      launcherSim = new FlywheelSim(
+          LinearSystemId.createFlywheelSystem(rollerMotor, LAUNCHER_SIM_MOI, LAUNCHER_SIM_GEARING),
+          rollerMotor);
+      feederSparkSim = new SparkMaxSim(feederRoller, rollerMotor);
+      launcherSparkSim = new SparkMaxSim(intakeLauncherRoller, rollerMotor);
+    }
+  }
+
+  // Adds the roller controllers to the boot-time device configuration, so that
+  // they are configured at the same time as the other devices. The persistent
+  // configuration is only written to flash if reading it back shows that it
+  // has changed. Signal periods are set from the given profile.
+  @SuppressWarnings("removal")
+  public void addDeviceConfiguration(DeviceConfigurator configurator, StatusFrameProfile profile) {
     // create the configuration for the feeder roller, set a current limit and apply
     // the config to the controller
     SparkMaxConfig feederConfig = new SparkMaxConfig();
     feederConfig.idleMode(IdleMode.kCoast);
     feederConfig.smartCurrentLimit(FEEDER_MOTOR_CURRENT_LIMIT);
-    feederRoller.configure(feederConfig, ResetMode.kResetSafeParameters, PersistMode.kPersistParameters);
+
+    // set the signal periods from the profile, except current, which is
+    // reported as often as the fuel event detector samples it. Applied every
+    // boot without persisting, after any reset of the persistent settings.
+    SparkMaxConfig feederSignalsConfig = new SparkMaxConfig();
+    profile.applyTo(feederSignalsConfig);
+    feederSignalsConfig.signals.outputCurrentPeriodMs((int) (FUEL_EVENT_SAMPLE_PERIOD_SECONDS * 1000));
+
+    configurator.add("Feeder roller",
+        () -> feederRoller.configure(feederSignalsConfig, ResetMode.kNoResetSafeParameters,
+            PersistMode.kNoPersistParameters),
+        () -> isConfigUpToDate(feederRoller, false, FEEDER_MOTOR_CURRENT_LIMIT),
+        () -> feederRoller.configure(feederConfig, ResetMode.kResetSafeParameters,
+            PersistMode.kPersistParameters));
 
     // create the configuration for the launcher roller, set a current limit, set
     // the motor to inverted so that positive values are used for both intaking and
@@ -53,52 +214,173 @@ public class CANFuelSubsystem extends SubsystemBase {
     launcherConfig.inverted(true);
     launcherConfig.idleMode(IdleMode.kCoast);
     launcherConfig.smartCurrentLimit(LAUNCHER_MOTOR_CURRENT_LIMIT);
-    intakeLauncherRoller.configure(launcherConfig, ResetMode.kResetSafeParameters, PersistMode.kPersistParameters);
+
+    // set the signal periods from the profile, except current and bus voltage,
+    // which are reported as often as the spin-up and fuel event detectors
+    // sample them. Applied every boot without persisting, after any reset of
+    // the persistent settings.
+    SparkMaxConfig launcherSignalsConfig = new SparkMaxConfig();
+    profile.applyTo(launcherSignalsConfig);
+    launcherSignalsConfig.signals.outputCurrentPeriodMs((int) (SPIN_UP_SAMPLE_PERIOD_SECONDS * 1000));
+    launcherSignalsConfig.signals.busVoltagePeriodMs((int) (SPIN_UP_SAMPLE_PERIOD_SECONDS * 1000));
+
+    configurator.add("Intake launcher roller",
+        () -> intakeLauncherRoller.configure(launcherSignalsConfig, ResetMode.kNoResetSafeParameters,
+            PersistMode.kNoPersistParameters),
+        () -> isConfigUpToDate(intakeLauncherRoller, true, LAUNCHER_MOTOR_CURRENT_LIMIT),
+        () -> intakeLauncherRoller.configure(launcherConfig, ResetMode.kResetSafeParameters,
+            PersistMode.kPersistParameters));
+  }
+
+  // Reads back the settings of a roller controller and returns true if they
+  // already match the ones we want
+  private static boolean isConfigUpToDate(SparkMax roller, boolean inverted, int currentLimit) {
+    return roller.configAccessor.getIdleMode() == IdleMode.kCoast
+        && roller.configAccessor.getInverted() == inverted
+        && roller.configAccessor.getSmartCurrentLimit() == currentLimit;
   }
 
   // A method to set the rollers to values for intaking
   public void intake() {
-    feederRoller.setVoltage(SmartDashboard.getNumber("Intaking feeder roller value", INTAKING_FEEDER_VOLTAGE));
-    intakeLauncherRoller
-        .setVoltage(SmartDashboard.getNumber("Intaking intake roller value", INTAKING_INTAKE_VOLTAGE));
+    setRollers(FuelMode.INTAKING, intakingFeederVoltage.get(), intakingIntakeVoltage.get());
   }
 
   // A method to set the rollers to values for hopper intake (half power)
   public void hopperIntake() {
-    feederRoller.setVoltage(SmartDashboard.getNumber("Hopper feeder roller value", HOPPER_FEEDER_VOLTAGE));
-    intakeLauncherRoller
-        .setVoltage(SmartDashboard.getNumber("Hopper intake roller value", HOPPER_INTAKE_VOLTAGE));
+    setRollers(FuelMode.HOPPER_INTAKING, hopperFeederVoltage.get(), hopperIntakeVoltage.get());
   }
 
   // A method to set the rollers to values for ejecting fuel out the intake. Uses
   // the same values as intaking, but in the opposite direction.
   public void eject() {
-    feederRoller
-        .setVoltage(-1 * SmartDashboard.getNumber("Intaking feeder roller value", INTAKING_FEEDER_VOLTAGE));
-    intakeLauncherRoller
-        .setVoltage(-1 * SmartDashboard.getNumber("Intaking launcher roller value", INTAKING_INTAKE_VOLTAGE));
+    setRollers(FuelMode.EJECTING, -1 * intakingFeederVoltage.get(), -1 * intakingIntakeVoltage.get());
   }
 
   // A method to set the rollers to values for launching.
   public void launch() {
-    feederRoller.setVoltage(SmartDashboard.getNumber("Launching feeder roller value", LAUNCHING_FEEDER_VOLTAGE));
-    intakeLauncherRoller
-        .setVoltage(SmartDashboard.getNumber("Launching launcher roller value", LAUNCHING_LAUNCHER_VOLTAGE));
+    setRollers(FuelMode.LAUNCHING, launchingFeederVoltage.get(), launchingLauncherVoltage.get());
   }
 
   // A method to stop the rollers
   public void stop() {
-    feederRoller.set(0);
-    intakeLauncherRoller.set(0);
+    setRollers(FuelMode.STOPPED, 0, 0);
   }
 
   // A method to spin up the launcher roller while spinning the feeder roller to
   // push Fuel away from the launcher
   public void spinUp() {
-    feederRoller
-        .setVoltage(SmartDashboard.getNumber("Spin-up feeder roller value", SPIN_UP_FEEDER_VOLTAGE));
-    intakeLauncherRoller
-        .setVoltage(SmartDashboard.getNumber("Launching launcher roller value", LAUNCHING_LAUNCHER_VOLTAGE));
+    setRollers(FuelMode.SPINNING_UP, spinUpFeederVoltage.get(), launchingLauncherVoltage.get());
+  }
+
+  // Sets both roller voltages, scaled by the power budget, and records what
+  // the rollers are being used for
+  private void setRollers(FuelMode newMode, double feederVoltage, double intakeLauncherVoltage) {
+    if (newMode != mode) {
+      fuelEventDetector.setMode(detectorModeFor(newMode));
+    }
+    mode = newMode;
+    feederOutput.set(feederVoltage * outputScale);
+    intakeLauncherOutput.set(intakeLauncherVoltage * outputScale);
+  }
+
+  // What spikes in the roller current mean in each mode. Spinning up counts as
+  // launching so that the detector is already settled when launching starts.
+  // Ejected fuel is not counted.
+  private static FuelEventDetector.Mode detectorModeFor(FuelMode mode) {
+    switch (mode) {
+      case INTAKING:
+      case HOPPER_INTAKING:
+        return FuelEventDetector.Mode.INTAKE;
+      case SPINNING_UP:
+      case LAUNCHING:
+      case RAPID_FIRE:
+        return FuelEventDetector.Mode.LAUNCH;
+      default:
+        return FuelEventDetector.Mode.NONE;
+    }
+  }
+
+  public FuelMode getMode() {
+    return mode;
+  }
+
+  // Returns true while the rollers are spinning up or launching fuel, including
+  // rapid fire
+  public boolean isScoring() {
+    return mode == FuelMode.SPINNING_UP || mode == FuelMode.LAUNCHING || mode == FuelMode.RAPID_FIRE;
+  }
+
+  // Sets the scale applied to every roller voltage from the next command on
+  public void setOutputScale(double scale) {
+    outputScale = scale;
+  }
+
+  public double getOutputScale() {
+    return outputScale;
+  }
+
+  // Changes the smart current limit of both rollers. The limit is only changed
+  // in RAM, not persisted, and only if it is different from the current one.
+  @SuppressWarnings("removal")
+  public void setCurrentLimit(int amps) {
+    if (amps == currentLimit) {
+      return;
+    }
+    currentLimit = amps;
+    SparkMaxConfig config = new SparkMaxConfig();
+    config.smartCurrentLimit(amps);
+    feederRoller.configureAsync(config, ResetMode.kNoResetSafeParameters, PersistMode.kNoPersistParameters);
+    intakeLauncherRoller.configureAsync(config, ResetMode.kNoResetSafeParameters,
+        PersistMode.kNoPersistParameters);
+  }
+
+  public int getCurrentLimit() {
+    return currentLimit;
+  }
+
+  // Voltage currently applied to the feeder roller
+  public double getFeederOutputVoltage() {
+    return feederVoltageInput.get();
+  }
+
+  // Voltage currently applied to the intake/launcher roller
+  public double getIntakeLauncherOutputVoltage() {
+    return launcherVoltageInput.get();
+  }
+
+  // Output current of the feeder roller in amps
+  public double getFeederCurrent() {
+    return feederCurrentInput.get();
+  }
+
+  // Output current of the intake/launcher roller in amps
+  public double getIntakeLauncherCurrent() {
+    return launcherCurrentInput.get();
+  }
+
+  // Voltage last commanded on the feeder roller
+  public double getFeederSetpoint() {
+    return feederOutput.getSetpoint();
+  }
+
+  // Voltage last commanded on the intake/launcher roller
+  public double getIntakeLauncherSetpoint() {
+    return intakeLauncherOutput.getSetpoint();
+  }
+
+  // Number of pieces of fuel detected leaving through the launcher
+  public int getLaunchCount() {
+    return (int) launchCountInput.get();
+  }
+
+  // Number of pieces of fuel detected coming in through the intake
+  public int getIntakeCount() {
+    return (int) intakeCountInput.get();
+  }
+
+  // Detected launches per second over the last few seconds
+  public double getLaunchRate() {
+    return launchRateInput.get();
   }
 
   // A command factory to turn the spinUpCommand method into a command that requires this
@@ -107,6 +389,131 @@ public class CANFuelSubsystem extends SubsystemBase {
     return this.run(() -> spinUp());
   }
 
+  // Returns true once the launcher has been detected to be at speed during the
+  // current spin-up
+  public boolean isLauncherReady() {
+    return launcherReadyInput.getBoolean();
+  }
+
+  // A command factory to spin up the launcher until the spin-up detector finds
+  // that it is at speed, or SPIN_UP_SECONDS have passed, whichever is first
+  public Command spinUpUntilReadyCommand() {
+    return this.startRun(() -> spinUpDetector.start(), () -> spinUp())
+        .until(() -> isLauncherReady())
+        .withTimeout(SPIN_UP_SECONDS)
+        .finallyDo(() -> spinUpDetector.stop());
+  }
+
+  // Puts the subsystem back in its idle state: rollers stopped, neither
+  // detector sampling, and no rapid fire sequence in progress
+  public void resetState() {
+    spinUpDetector.stop();
+    stop();
+    rapidFireState = null;
+    rapidFireShots = 0;
+  }
+
+  // Starts a rapid fire sequence from the beginning
+  private void startRapidFire() {
+    rapidFireShots = 0;
+    enterRapidFireState(RapidFireState.SPIN_UP);
+  }
+
+  // Runs one step of the rapid fire sequence. The launcher is held at launch
+  // voltage the whole time, and the feeder is pulsed once per piece of fuel,
+  // until the fuel event detector sees the launch or the pulse time runs out.
+  // After each pulse the feeder holds fuel back until the spin-up detector sees
+  // the launcher back at speed, so each shot leaves at full speed without
+  // waiting any longer than the launcher needs.
+  private void runRapidFire() {
+    double elapsed = Timer.getFPGATimestamp() - rapidFireStateStartTime;
+    switch (rapidFireState) {
+      case SPIN_UP:
+        if (isLauncherReady() || elapsed >= SPIN_UP_SECONDS) {
+          enterRapidFireState(RapidFireState.FEED);
+        }
+        break;
+      case FEED:
+        if (getLaunchCount() != rapidFireLaunchCount) {
+          countRapidFireShot();
+          enterRapidFireState(RapidFireState.RECOVER);
+        } else if (elapsed >= rapidFireFeedSeconds.get()) {
+          // No launch seen, most likely out of fuel or a missed spike
+          enterRapidFireState(RapidFireState.RECOVER);
+        }
+        break;
+      case RECOVER:
+        if (isLauncherReady() || elapsed >= rapidFireRecoverSeconds.get()) {
+          enterRapidFireState(RapidFireState.FEED);
+        }
+        break;
+    }
+
+    double feederVoltage = rapidFireState == RapidFireState.FEED
+        ? launchingFeederVoltage.get()
+        : spinUpFeederVoltage.get();
+    setRollers(FuelMode.RAPID_FIRE, feederVoltage, launchingLauncherVoltage.get());
+  }
+
+  private void enterRapidFireState(RapidFireState state) {
+    rapidFireState = state;
+    rapidFireStateStartTime = Timer.getFPGATimestamp();
+    // Watch the launcher come back up to speed whenever fuel is held back
+    if (state == RapidFireState.FEED) {
+      rapidFireLaunchCount = getLaunchCount();
+      spinUpDetector.stop();
+    } else {
+      spinUpDetector.start();
+    }
+  }
+
+  private void countRapidFireShot() {
+    double now = Timer.getFPGATimestamp();
+    if (rapidFireShots == 0) {
+      rapidFireFirstShotTime = now;
+    }
+    rapidFireShots++;
+    rapidFireShotsField.set(rapidFireShots);
+    if (rapidFireShots > 1) {
+      // Shots after the first, over the time since the first
+      rapidFireRateField.set((rapidFireShots - 1) / (now - rapidFireFirstShotTime));
+    }
+  }
+
+  // A command factory to launch fuel continuously for as long as the command
+  // runs, pulsing the feeder once per piece of fuel and letting the launcher
+  // recover its speed between shots
+  public Command rapidFireCommand() {
+    return this.startRun(() -> startRapidFire(), () -> runRapidFire())
+        .finallyDo(() -> {
+          spinUpDetector.stop();
+          stop();
+        });
+  }
+
+  // A command factory to rapid fire until no fuel has been launched for
+  // emptySeconds, which means the hopper is empty. emptySeconds has to allow
+  // for the launcher spinning up before the first shot.
+  public Command rapidFireUntilEmptyCommand(double emptySeconds) {
+    return rapidFireCommand()
+        .beforeStarting(() -> {
+          emptyCheckLaunchCount = getLaunchCount();
+          emptyCheckTime = Timer.getFPGATimestamp();
+        })
+        .until(() -> isHopperEmpty(emptySeconds));
+  }
+
+  // Returns true if no launch has been detected in the last emptySeconds
+  private boolean isHopperEmpty(double emptySeconds) {
+    double now = Timer.getFPGATimestamp();
+    int launches = getLaunchCount();
+    if (launches != emptyCheckLaunchCount) {
+      emptyCheckLaunchCount = launches;
+      emptyCheckTime = now;
+    }
+    return now - emptyCheckTime >= emptySeconds;
+  }
+
   // A command factory to turn the launchCommand method into a command that requires this
   // subsystem
   public Command launchCommand() {
@@ -122,5 +529,40 @@ public class CANFuelSubsystem extends SubsystemBase {
   @Override
   public void periodic() {
     // This method will be called once per scheduler run
+    long start = periodicTiming.start();
+    publishFuelEvents();
+    periodicTiming.stop(start);
+  }
+
+  // Updates the fuel counts and launch rate on the dashboard
+  private void publishFuelEvents() {
+    launchesField.set(getLaunchCount());
+    intakesField.set(getIntakeCount());
+    lastLaunchIntervalField.set(fuelEventDetector.getLastLaunchInterval());
+    launchRateField.set(getLaunchRate());
+  }
+
+  @Override
+  public void simulationPeriodic() {
+    double busVoltage = RobotController.getBatteryVoltage();
+    simulateRoller(feederSim, feederSparkSim, busVoltage);
+    simulateRoller(launcherSim, launcherSparkSim, busVoltage);
+  }
+
+  // Steps one roller model using the voltage its controller is applying, and
+  // feeds the resulting speed and current back into the simulated controller
+  private static void simulateRoller(FlywheelSim roller, SparkMaxSim spark, double busVoltage) {
+    roller.setInputVoltage(spark.getAppliedOutput() * busVoltage);
+    roller.update(0.02);
+    spark.iterate(roller.getAngularVelocityRPM(), busVoltage, 0.02);
+    spark.setMotorCurrent(Math.abs(roller.getCurrentDrawAmps()));
+  }
+
+  // Total current drawn by the simulated rollers, used for battery sag
+  public double getSimulatedCurrentDraw() {
+    if (feederSim == null) {
+      return 0;
+    }
+    return Math.abs(feederSim.getCurrentDrawAmps()) + Math.abs(launcherSim.getCurrentDrawAmps());
   }
 }
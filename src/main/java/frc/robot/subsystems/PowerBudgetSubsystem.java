@@ -0,0 +1,125 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.util.LoggedInput;
+import frc.robot.util.LoopTimer;
+import frc.robot.util.TelemetryGroup;
+import static frc.robot.Constants.FuelConstants.FEEDER_MOTOR_CURRENT_LIMIT;
+import static frc.robot.Constants.FuelConstants.LAUNCHER_MOTOR_CURRENT_LIMIT;
+import static frc.robot.Constants.PowerConstants.*;
+import static frc.robot.Constants.TelemetryConstants.DIAGNOSTICS_TELEMETRY_PERIOD_SECONDS;
+
+/**
+ * Shares the battery between the drivetrain and the fuel mechanism. Every loop
+ * it works out how much headroom is left from the battery voltage and the total
+ * current draw. The mechanism that is currently scoring (the fuel mechanism
+ * while spinning up or launching, otherwise the drivetrain) keeps its full
+ * output. The other one has its output scale cut back as the headroom shrinks,
+ * and the fuel rollers also have their current limit cut back. The drive
+ * current limit is never changed, since the Talon SRX stores it in flash. The
+ * aim is to keep the battery out of brownout so the scoring mechanism keeps its
+ * throughput, instead of both mechanisms collapsing together.
+ */
+public class PowerBudgetSubsystem extends SubsystemBase {
+  private final CANDriveSubsystem driveSubsystem;
+  private final CANFuelSubsystem fuelSubsystem;
+
+  private final LoopTimer.Section periodicTiming = LoopTimer.section("Subsystem/PowerBudget");
+
+  // Battery voltage, recorded by the input log so it can be replayed
+  private final LoggedInput batteryVoltageInput =
+      LoggedInput.of("Power/Battery voltage", RobotController::getBatteryVoltage);
+
+  // Dashboard values, sent only when they change
+  private final TelemetryGroup telemetry = new TelemetryGroup("Power", DIAGNOSTICS_TELEMETRY_PERIOD_SECONDS);
+  private final TelemetryGroup.StringField priorityField = telemetry.addString("Priority");
+  private final TelemetryGroup.DoubleField fuelLimitField = telemetry.addDouble("Fuel current limit");
+
+  private double headroom = 1.0;
+  private double lastLimitUpdateTime;
+  private boolean fuelPriority;
+
+  public PowerBudgetSubsystem(CANDriveSubsystem driveSubsystem, CANFuelSubsystem fuelSubsystem) {
+    this.driveSubsystem = driveSubsystem;
+    this.fuelSubsystem = fuelSubsystem;
+    priorityField.set("Drive");
+    fuelLimitField.set(fuelSubsystem.getCurrentLimit());
+  }
+
+  @Override
+  public void periodic() {
+    long start = periodicTiming.start();
+
+    // Headroom from the battery voltage: 1 when healthy, 0 near brownout
+    double voltageHeadroom = MathUtil.inverseInterpolate(POWER_NO_HEADROOM_VOLTS, POWER_FULL_HEADROOM_VOLTS,
+        batteryVoltageInput.get());
+
+    // Headroom from the current draw: starts dropping within the margin of the
+    // total budget. The Talons' supply current is used, since their stator
+    // current is well above the battery draw at partial output. Each drive
+    // leader has a follower drawing about the same.
+    double totalCurrent = 2 * (driveSubsystem.getLeftSupplyCurrent() + driveSubsystem.getRightSupplyCurrent())
+        + fuelSubsystem.getFeederCurrent() + fuelSubsystem.getIntakeLauncherCurrent();
+    double currentHeadroom = MathUtil.inverseInterpolate(POWER_TOTAL_CURRENT_BUDGET,
+        POWER_TOTAL_CURRENT_BUDGET - POWER_CURRENT_MARGIN, totalCurrent);
+
+    double target = Math.min(voltageHeadroom, currentHeadroom);
+    headroom += POWER_HEADROOM_FILTER * (target - headroom);
+
+    fuelPriority = fuelSubsystem.isScoring();
+    priorityField.set(fuelPriority ? "Fuel" : "Drive");
+
+    // The priority mechanism is only scaled back slightly, and only once the
+    // headroom is gone; the other one gives up output as headroom shrinks
+    double priorityScale = MathUtil.interpolate(PRIORITY_MIN_OUTPUT_SCALE, 1.0, Math.min(1.0, headroom * 4));
+    double otherScale = MathUtil.interpolate(MIN_OUTPUT_SCALE, 1.0, headroom);
+    driveSubsystem.setOutputScale(fuelPriority ? otherScale : priorityScale);
+    fuelSubsystem.setOutputScale(fuelPriority ? priorityScale : otherScale);
+
+    updateCurrentLimits();
+
+    periodicTiming.stop(start);
+  }
+
+  // Cuts back the fuel rollers' current limit while they are not the priority.
+  // The limit is only changed in the Spark MAX's RAM. It is rounded to steps,
+  // and cuts are rate limited so the controllers are not reconfigured every
+  // loop. Raising the limit is never delayed, so the rollers get their full
+  // limit as soon as they become the priority.
+  private void updateCurrentLimits() {
+    int fuelFullLimit = Math.max(FEEDER_MOTOR_CURRENT_LIMIT, LAUNCHER_MOTOR_CURRENT_LIMIT);
+    int fuelLimit = fuelPriority ? fuelFullLimit : scaledLimit(FUEL_MIN_CURRENT_LIMIT, fuelFullLimit);
+    int currentLimit = fuelSubsystem.getCurrentLimit();
+    if (fuelLimit == currentLimit) {
+      return;
+    }
+
+    double now = Timer.getFPGATimestamp();
+    if (fuelLimit < currentLimit && now - lastLimitUpdateTime < CURRENT_LIMIT_MIN_UPDATE_SECONDS) {
+      return;
+    }
+    fuelSubsystem.setCurrentLimit(fuelLimit);
+    lastLimitUpdateTime = now;
+    fuelLimitField.set(fuelLimit);
+  }
+
+  // Interpolates between the minimum and full limit by the headroom, rounded
+  // down to the limit step
+  private int scaledLimit(int min, int full) {
+    int limit = (int) MathUtil.interpolate(min, full, headroom);
+    limit -= limit % CURRENT_LIMIT_STEP;
+    return MathUtil.clamp(limit, min, full);
+  }
+
+  // Fraction of the battery headroom left, from 0 (none) to 1 (full)
+  public double getHeadroom() {
+    return headroom;
+  }
+}
@@ -0,0 +1,193 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import java.util.List;
+
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.util.datalog.IntegerLogEntry;
+import edu.wpi.first.util.datalog.StringLogEntry;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.util.CachedMotorOutput;
+import frc.robot.util.LoopTimer;
+import frc.robot.util.RecordRingBuffer;
+import static frc.robot.Constants.TelemetryConstants.*;
+
+/**
+ * Logs motor voltages, currents and setpoints from the drive and fuel
+ * subsystems, the power budget, plus the command running on each, to the WPILOG file started by
+ * {@link DataLogManager}. The robot thread only copies a fixed-width record into
+ * a preallocated ring buffer each loop. A background thread drains the buffer
+ * and does the actual log writes, so logging never blocks the robot loop. If
+ * the writer falls behind, records are dropped and counted instead.
+ */
+public class TelemetrySubsystem extends SubsystemBase {
+  // Layout of each record. Index 0 is always the FPGA timestamp in
+  // microseconds.
+  private static final String[] VALUE_NAMES = {
+      "Timestamp",
+      "Drive/Left voltage",
+      "Drive/Right voltage",
+      "Drive/Left current",
+      "Drive/Right current",
+      "Drive/Left setpoint",
+      "Drive/Right setpoint",
+      "Fuel/Feeder voltage",
+      "Fuel/Intake launcher voltage",
+      "Fuel/Feeder current",
+      "Fuel/Intake launcher current",
+      "Fuel/Feeder setpoint",
+      "Fuel/Intake launcher setpoint",
+      "CAN/Writes sent",
+      "CAN/Writes suppressed",
+      "Power/Battery voltage",
+      "Power/Headroom",
+      "Power/Drive output scale",
+      "Power/Fuel output scale",
+      "Power/Fuel current limit",
+  };
+  private static final String[] REF_NAMES = {
+      "Drive/Command",
+      "Fuel/Command",
+  };
+
+  private final CANDriveSubsystem driveSubsystem;
+  private final CANFuelSubsystem fuelSubsystem;
+  private final PowerBudgetSubsystem powerBudgetSubsystem;
+
+  private final RecordRingBuffer buffer =
+      new RecordRingBuffer(TELEMETRY_BUFFER_CAPACITY, VALUE_NAMES.length, REF_NAMES.length);
+  private final List<CachedMotorOutput> outputs = CachedMotorOutput.getAll();
+
+  // Scratch record filled by the robot thread and copied into the buffer
+  private final double[] record = new double[VALUE_NAMES.length];
+  private final Object[] recordRefs = new Object[REF_NAMES.length];
+
+  private final LoopTimer.Section periodicTiming = LoopTimer.section("Subsystem/Telemetry");
+
+  public TelemetrySubsystem(CANDriveSubsystem driveSubsystem, CANFuelSubsystem fuelSubsystem,
+      PowerBudgetSubsystem powerBudgetSubsystem) {
+    this.driveSubsystem = driveSubsystem;
+    this.fuelSubsystem = fuelSubsystem;
+    this.powerBudgetSubsystem = powerBudgetSubsystem;
+
+    Thread writer = new Thread(new Writer(buffer), "Telemetry writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  @Override
+  public void periodic() {
+    long start = periodicTiming.start();
+
+    // Subsystem periodics run before commands execute, so the setpoints here
+    // are the ones commanded during the previous loop
+    record[0] = RobotController.getFPGATime();
+    record[1] = driveSubsystem.getLeftOutputVoltage();
+    record[2] = driveSubsystem.getRightOutputVoltage();
+    record[3] = driveSubsystem.getLeftCurrent();
+    record[4] = driveSubsystem.getRightCurrent();
+    record[5] = driveSubsystem.getLeftSetpoint();
+    record[6] = driveSubsystem.getRightSetpoint();
+    record[7] = fuelSubsystem.getFeederOutputVoltage();
+    record[8] = fuelSubsystem.getIntakeLauncherOutputVoltage();
+    record[9] = fuelSubsystem.getFeederCurrent();
+    record[10] = fuelSubsystem.getIntakeLauncherCurrent();
+    record[11] = fuelSubsystem.getFeederSetpoint();
+    record[12] = fuelSubsystem.getIntakeLauncherSetpoint();
+
+    long sent = 0;
+    long suppressed = 0;
+    for (int i = 0; i < outputs.size(); i++) {
+      sent += outputs.get(i).getSentCount();
+      suppressed += outputs.get(i).getSuppressedCount();
+    }
+    record[13] = sent;
+    record[14] = suppressed;
+
+    record[15] = RobotController.getBatteryVoltage();
+    record[16] = powerBudgetSubsystem.getHeadroom();
+    record[17] = driveSubsystem.getOutputScale();
+    record[18] = fuelSubsystem.getOutputScale();
+    record[19] = fuelSubsystem.getCurrentLimit();
+
+    recordRefs[0] = driveSubsystem.getCurrentCommand();
+    recordRefs[1] = fuelSubsystem.getCurrentCommand();
+
+    buffer.tryWrite(record, recordRefs);
+
+    periodicTiming.stop(start);
+  }
+
+  // Number of records dropped because the writer fell behind
+  public long getDroppedCount() {
+    return buffer.getDroppedCount();
+  }
+
+  // Drains the ring buffer into the data log on a background thread
+  private static final class Writer implements Runnable {
+    private final RecordRingBuffer buffer;
+    private final DoubleLogEntry[] valueEntries = new DoubleLogEntry[VALUE_NAMES.length];
+    private final StringLogEntry[] refEntries = new StringLogEntry[REF_NAMES.length];
+    private final IntegerLogEntry droppedEntry;
+    private final double[] values = new double[VALUE_NAMES.length];
+    private final Object[] refs = new Object[REF_NAMES.length];
+    private final Object[] lastRefs = new Object[REF_NAMES.length];
+    private long lastDropped = -1;
+
+    Writer(RecordRingBuffer buffer) {
+      this.buffer = buffer;
+      DataLog log = DataLogManager.getLog();
+      // The timestamp is the log entry timestamp, so it doesn't get an entry
+      for (int i = 1; i < VALUE_NAMES.length; i++) {
+        valueEntries[i] = new DoubleLogEntry(log, "Telemetry/" + VALUE_NAMES[i]);
+      }
+      for (int i = 0; i < REF_NAMES.length; i++) {
+        refEntries[i] = new StringLogEntry(log, "Telemetry/" + REF_NAMES[i]);
+      }
+      droppedEntry = new IntegerLogEntry(log, "Telemetry/Dropped records");
+    }
+
+    @Override
+    public void run() {
+      long periodMillis = (long) (TELEMETRY_WRITER_PERIOD_SECONDS * 1000);
+      while (!Thread.currentThread().isInterrupted()) {
+        while (buffer.tryRead(values, refs)) {
+          write();
+        }
+
+        long dropped = buffer.getDroppedCount();
+        if (dropped != lastDropped) {
+          droppedEntry.append(dropped);
+          lastDropped = dropped;
+        }
+
+        try {
+          Thread.sleep(periodMillis);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    private void write() {
+      long timestamp = (long) values[0];
+      for (int i = 1; i < valueEntries.length; i++) {
+        valueEntries[i].append(values[i], timestamp);
+      }
+      // Only log the command names when they change
+      for (int i = 0; i < refEntries.length; i++) {
+        if (refs[i] != lastRefs[i]) {
+          refEntries[i].append(refs[i] == null ? "" : ((Command) refs[i]).getName(), timestamp);
+          lastRefs[i] = refs[i];
+        }
+      }
+    }
+  }
+}
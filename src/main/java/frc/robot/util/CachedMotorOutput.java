@@ -0,0 +1,146 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+
+import com.ctre.phoenix.motorcontrol.ControlMode;
+import com.ctre.phoenix.motorcontrol.can.BaseMotorController;
+import com.revrobotics.spark.SparkBase;
+
+/**
+ * Wraps a motor controller output so that the controller's set method is only
+ * called when the setpoint changes by more than an epsilon, or when the
+ * keep-alive interval has passed since the last call. Commands that hold a
+ * motor at a fixed value every loop then only cost a call into the vendor
+ * library when something actually changes.
+ *
+ * <p>
+ * This saves JNI calls on the robot thread, not CAN bandwidth: Phoenix 5
+ * controllers resend their control frame at a fixed period whether or not the
+ * setpoint was set again. Anything that changes the output behind the cache's
+ * back, such as the motor safety stopping a motor or the robot being disabled,
+ * must be followed by {@link #invalidate()} so the next setpoint is sent.
+ *
+ * <p>
+ * Counts of sent and suppressed writes are kept for each output.
+ */
+public class CachedMotorOutput {
+  // Every output that has been created, so they can be reported together
+  private static final List<CachedMotorOutput> registry = new ArrayList<>();
+
+  // While muted, set() does nothing, so code can be exercised without
+  // commanding any hardware
+  private static volatile boolean muted;
+
+  private final String name;
+  private final DoubleConsumer sink;
+  private final double epsilon;
+  private final long keepAliveNanos;
+
+  private double setpoint;
+  private double lastSent = Double.NaN;
+  private long lastSentNanos;
+  private long sentCount;
+  private long suppressedCount;
+
+  public CachedMotorOutput(String name, DoubleConsumer sink, double epsilon, double keepAliveSeconds) {
+    this.name = name;
+    this.sink = sink;
+    this.epsilon = epsilon;
+    this.keepAliveNanos = (long) (keepAliveSeconds * 1e9);
+    synchronized (registry) {
+      registry.add(this);
+    }
+  }
+
+  // Creates an output that sets the voltage of a SPARK controller
+  public static CachedMotorOutput voltage(String name, SparkBase spark, double epsilon,
+      double keepAliveSeconds) {
+    return new CachedMotorOutput(name, spark::setVoltage, epsilon, keepAliveSeconds);
+  }
+
+  // Creates an output that sets the percent output of a Talon SRX or Victor SPX
+  public static CachedMotorOutput percentOutput(String name, BaseMotorController controller,
+      double epsilon, double keepAliveSeconds) {
+    return new CachedMotorOutput(name, value -> controller.set(ControlMode.PercentOutput, value),
+        epsilon, keepAliveSeconds);
+  }
+
+  // Commands a new setpoint, sending it to the controller only if it changed
+  // enough or the keep-alive interval has run out
+  public void set(double value) {
+    if (muted) {
+      return;
+    }
+    setpoint = value;
+    long now = System.nanoTime();
+    boolean changed = Double.isNaN(lastSent)
+        || Math.abs(value - lastSent) > epsilon
+        // Always send an exact stop, even if the last value was within epsilon
+        || (value == 0.0 && lastSent != 0.0);
+    if (changed || now - lastSentNanos >= keepAliveNanos) {
+      sink.accept(value);
+      lastSent = value;
+      lastSentNanos = now;
+      sentCount++;
+    } else {
+      suppressedCount++;
+    }
+  }
+
+  // Forces the next call to set() to send its value
+  public void invalidate() {
+    lastSent = Double.NaN;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  // Returns the most recently commanded setpoint, whether or not it was sent
+  public double getSetpoint() {
+    return setpoint;
+  }
+
+  public long getSentCount() {
+    return sentCount;
+  }
+
+  public long getSuppressedCount() {
+    return suppressedCount;
+  }
+
+  // Mutes or unmutes every output. When unmuted, each output sends its next
+  // setpoint regardless of the cache.
+  public static void setMuted(boolean mute) {
+    muted = mute;
+    if (!mute) {
+      invalidateAll();
+    }
+  }
+
+  // True while outputs are muted, such as during a warmup pass
+  public static boolean isMuted() {
+    return muted;
+  }
+
+  // Forces every output to send its next setpoint. Called when the robot is
+  // enabled, since controllers are neutral while disabled.
+  public static void invalidateAll() {
+    for (CachedMotorOutput output : getAll()) {
+      output.invalidate();
+    }
+  }
+
+  // Returns every output that has been created, in creation order
+  public static List<CachedMotorOutput> getAll() {
+    synchronized (registry) {
+      return List.copyOf(registry);
+    }
+  }
+}
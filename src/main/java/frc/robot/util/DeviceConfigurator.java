@@ -0,0 +1,92 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * Configures motor controllers at boot. Every device is configured on its own
+ * thread so the blocking CAN round trips overlap instead of running one after
+ * another. For each device, settings that are lost on power cycle are always
+ * applied. Persistent settings are only written (and flash only worn) if
+ * reading back the device shows they differ from what is wanted. The time
+ * each device took is reported to the log.
+ */
+public class DeviceConfigurator {
+  private final List<Device> devices = new ArrayList<>();
+
+  // Adds a device to configure. applyVolatile runs every boot and may be null.
+  // isUpToDate reads the device's current persistent settings and returns true
+  // if they already match; if not, applyPersistent writes and persists them.
+  public void add(String name, Runnable applyVolatile, BooleanSupplier isUpToDate,
+      Runnable applyPersistent) {
+    devices.add(new Device(name, applyVolatile, isUpToDate, applyPersistent));
+  }
+
+  // Configures every added device concurrently and waits for all of them to
+  // finish
+  public void configureAll() {
+    if (devices.isEmpty()) {
+      return;
+    }
+    long start = System.nanoTime();
+    ExecutorService executor = Executors.newFixedThreadPool(devices.size());
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (Device device : devices) {
+        futures.add(executor.submit(device::configure));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          futures.get(i).get();
+        } catch (Exception e) {
+          DriverStation.reportError("Failed to configure " + devices.get(i).name + ": " + e, e.getStackTrace());
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+    DataLogManager.log(String.format("Configured %d devices in %.1f ms", devices.size(),
+        (System.nanoTime() - start) / 1e6));
+    devices.clear();
+  }
+
+  private static final class Device {
+    private final String name;
+    private final Runnable applyVolatile;
+    private final BooleanSupplier isUpToDate;
+    private final Runnable applyPersistent;
+
+    Device(String name, Runnable applyVolatile, BooleanSupplier isUpToDate, Runnable applyPersistent) {
+      this.name = name;
+      this.applyVolatile = applyVolatile;
+      this.isUpToDate = isUpToDate;
+      this.applyPersistent = applyPersistent;
+    }
+
+    void configure() {
+      long start = System.nanoTime();
+      boolean persisted = false;
+      if (isUpToDate != null && !isUpToDate.getAsBoolean()) {
+        applyPersistent.run();
+        persisted = true;
+      }
+      if (applyVolatile != null) {
+        applyVolatile.run();
+      }
+      DataLogManager.log(String.format("Configured %s in %.1f ms (%s)", name,
+          (System.nanoTime() - start) / 1e6,
+          persisted ? "persistent settings written" : "persistent settings unchanged"));
+    }
+  }
+}
@@ -0,0 +1,169 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Counts individual pieces of fuel going in and out from the roller currents.
+ * Each piece that passes through the rollers loads them briefly, which shows up
+ * as a short spike in the current above the running baseline. While intaking,
+ * each spike in the combined current of both rollers is counted as an intake.
+ * While launching, only the launcher current is watched, since the feeder is
+ * pulsed on and off between shots and its own inrush would look like fuel.
+ *
+ * <p>
+ * Samples are taken on a {@link Notifier} that runs faster than the robot loop
+ * while the detector has an active mode. Right after the mode changes, spikes
+ * are ignored while the rollers' own inrush current dies down.
+ */
+public class FuelEventDetector {
+  // What the detected spikes are counted as
+  public enum Mode {
+    NONE,
+    INTAKE,
+    LAUNCH
+  }
+
+  // Number of recent launch times kept for the throughput rate
+  private static final int HISTORY_SIZE = 32;
+
+  private final DoubleSupplier feederCurrent;
+  private final DoubleSupplier launcherCurrent;
+  private final double samplePeriodSeconds;
+  private final double spikeAmps;
+  private final double baselineFilter;
+  private final double minIntervalSeconds;
+  private final double blankingSeconds;
+  private final double throughputWindowSeconds;
+  private final Notifier notifier;
+
+  private Mode mode = Mode.NONE;
+  private double modeStartTime;
+  private double baseline;
+  private boolean inSpike;
+  private double lastEventTime;
+
+  private int launchCount;
+  private int intakeCount;
+  private double lastLaunchTime;
+  private double lastLaunchInterval;
+  private final double[] launchTimes = new double[HISTORY_SIZE];
+
+  public FuelEventDetector(DoubleSupplier feederCurrent, DoubleSupplier launcherCurrent,
+      double samplePeriodSeconds, double spikeAmps, double baselineFilter, double minIntervalSeconds,
+      double blankingSeconds, double throughputWindowSeconds) {
+    this.feederCurrent = feederCurrent;
+    this.launcherCurrent = launcherCurrent;
+    this.samplePeriodSeconds = samplePeriodSeconds;
+    this.spikeAmps = spikeAmps;
+    this.baselineFilter = baselineFilter;
+    this.minIntervalSeconds = minIntervalSeconds;
+    this.blankingSeconds = blankingSeconds;
+    this.throughputWindowSeconds = throughputWindowSeconds;
+    notifier = new Notifier(this::sample);
+    notifier.setName("Fuel event detector");
+  }
+
+  // Changes what spikes are counted as. Sampling runs only while the mode is
+  // not NONE.
+  public synchronized void setMode(Mode newMode) {
+    if (newMode == mode) {
+      return;
+    }
+    boolean wasRunning = mode != Mode.NONE;
+    mode = newMode;
+    modeStartTime = Timer.getFPGATimestamp();
+    inSpike = false;
+    if (newMode == Mode.NONE) {
+      notifier.stop();
+    } else if (!wasRunning) {
+      baseline = watchedCurrent();
+      notifier.startPeriodic(samplePeriodSeconds);
+    }
+  }
+
+  public synchronized int getLaunchCount() {
+    return launchCount;
+  }
+
+  public synchronized int getIntakeCount() {
+    return intakeCount;
+  }
+
+  // Seconds between the last two launches, or 0 if there have not been two
+  public synchronized double getLastLaunchInterval() {
+    return lastLaunchInterval;
+  }
+
+  // Launches per second over the throughput window
+  public synchronized double getLaunchRate() {
+    double now = Timer.getFPGATimestamp();
+    int recent = 0;
+    int available = Math.min(launchCount, HISTORY_SIZE);
+    for (int i = 0; i < available; i++) {
+      if (now - launchTimes[i] <= throughputWindowSeconds) {
+        recent++;
+      }
+    }
+    return recent / throughputWindowSeconds;
+  }
+
+  // The current watched in the current mode
+  private double watchedCurrent() {
+    double amps = Math.abs(launcherCurrent.getAsDouble());
+    if (mode == Mode.INTAKE) {
+      amps += Math.abs(feederCurrent.getAsDouble());
+    }
+    return amps;
+  }
+
+  private synchronized void sample() {
+    if (mode == Mode.NONE) {
+      return;
+    }
+    double now = Timer.getFPGATimestamp();
+    double amps = watchedCurrent();
+
+    // Follow the rollers' own current closely while their inrush dies down
+    if (now - modeStartTime < blankingSeconds) {
+      baseline = amps;
+      return;
+    }
+
+    double aboveBaseline = amps - baseline;
+    if (!inSpike) {
+      if (aboveBaseline > spikeAmps) {
+        inSpike = true;
+        if (now - lastEventTime >= minIntervalSeconds) {
+          countEvent(now);
+        }
+      } else {
+        // Only track the baseline outside of spikes
+        baseline += baselineFilter * (amps - baseline);
+      }
+    } else if (aboveBaseline < spikeAmps / 2) {
+      inSpike = false;
+    }
+  }
+
+  private void countEvent(double now) {
+    if (mode == Mode.LAUNCH) {
+      // Measured from the previous launch, not from any intakes in between
+      if (launchCount > 0) {
+        lastLaunchInterval = now - lastLaunchTime;
+      }
+      lastLaunchTime = now;
+      launchTimes[launchCount % HISTORY_SIZE] = now;
+      launchCount++;
+    } else {
+      intakeCount++;
+    }
+    lastEventTime = now;
+  }
+}
@@ -0,0 +1,262 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.Map;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+import com.sun.management.ThreadMXBean;
+
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.util.datalog.IntegerLogEntry;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.TimedRobot;
+import static frc.robot.Constants.TelemetryConstants.DIAGNOSTICS_TELEMETRY_PERIOD_SECONDS;
+
+/**
+ * Watches garbage collection and ties each pause to the robot loop it happened
+ * in, so loop overruns caused by the collector can be told apart from
+ * overruns caused by slow code.
+ *
+ * <p>
+ * The JVM reports each collection on its own notification thread after the
+ * collection has finished. Those reports are queued and matched to loops on the
+ * robot thread by their start time. A pause that starts while the robot thread
+ * is waiting between loops is not charged to any loop. A loop is only counted
+ * as an overrun with or without a GC pause a few loops after it ends, so late
+ * reports are not missed. Each pause is written to the data log with its loop
+ * number, or -1 if it fell between loops, and the heap occupancy after it. Heap use, the heap allocation rate between
+ * collections and the robot thread's allocation per loop are published with
+ * the pause and overrun counts.
+ *
+ * <p>
+ * The JVM reports collection times in whole milliseconds, so pauses shorter
+ * than 1 ms are counted but show as 0 ms. Concurrent collector cycles, which do
+ * not stop the robot thread, are ignored.
+ */
+public final class GcMonitor {
+  // Number of recent loops kept for matching pauses to loops
+  private static final int LOOP_HISTORY = 64;
+  // Loops to wait for late pause reports before counting a loop's overrun
+  private static final int SETTLE_LOOPS = 10;
+  // Loops between dashboard updates
+  private static final int PUBLISH_PERIOD_LOOPS = 250;
+  private static final long LOOP_PERIOD_NANOS = (long) (TimedRobot.kDefaultPeriod * 1e9);
+  private static final double BYTES_PER_MB = 1024 * 1024;
+  private static final Object[] NO_REFS = new Object[0];
+
+  // Pause reports from the notification thread: start time in nanos, duration
+  // in nanos, heap used before and after in bytes
+  private static final RecordRingBuffer pauses = new RecordRingBuffer(64, 4, 0);
+  private static final double[] pauseRecord = new double[4];
+  private static final double[] drainRecord = new double[4];
+
+  private static final long[] loopStarts = new long[LOOP_HISTORY];
+  private static final long[] loopDurations = new long[LOOP_HISTORY];
+  private static final int[] loopPauseCounts = new int[LOOP_HISTORY];
+
+  private static boolean started;
+  private static long uptimeOffsetNanos;
+  private static long loopCount;
+  private static int loopsSincePublish;
+
+  private static long pauseCount;
+  private static double maxPauseMillis;
+  private static long gcOverruns;
+  private static long otherOverruns;
+  private static double heapUsedAfterGc = Double.NaN;
+  private static double lastGcEndNanos = Double.NaN;
+  private static double heapAllocationRate;
+
+  private static ThreadMXBean threadBean;
+  private static long robotThreadId;
+  private static long allocatedAtPublish;
+
+  // Dashboard values, sent only when they change
+  private static final TelemetryGroup telemetry = new TelemetryGroup("GC", DIAGNOSTICS_TELEMETRY_PERIOD_SECONDS);
+  private static final TelemetryGroup.DoubleField threadAllocationField =
+      telemetry.addDouble("Robot thread KB per loop");
+  private static final TelemetryGroup.DoubleField heapUsedField = telemetry.addDouble("Heap used MB");
+  private static final TelemetryGroup.DoubleField heapAllocationField =
+      telemetry.addDouble("Heap allocation MB per s");
+  private static final TelemetryGroup.DoubleField pausesField = telemetry.addDouble("Pauses");
+  private static final TelemetryGroup.DoubleField maxPauseField = telemetry.addDouble("Max pause ms");
+  private static final TelemetryGroup.DoubleField gcOverrunsField = telemetry.addDouble("Overruns with GC");
+  private static final TelemetryGroup.DoubleField otherOverrunsField =
+      telemetry.addDouble("Overruns without GC");
+
+  private static DoubleLogEntry pauseEntry;
+  private static IntegerLogEntry pauseLoopEntry;
+  private static DoubleLogEntry heapAfterEntry;
+
+  private GcMonitor() {}
+
+  // Starts listening for collections. Must be called from the robot thread.
+  public static void start() {
+    if (started) {
+      return;
+    }
+    started = true;
+
+    // Collection start times are given in milliseconds since the JVM started
+    uptimeOffsetNanos = System.nanoTime() - ManagementFactory.getRuntimeMXBean().getUptime() * 1_000_000;
+
+    DataLog log = DataLogManager.getLog();
+    pauseEntry = new DoubleLogEntry(log, "GC/Pause ms");
+    pauseLoopEntry = new IntegerLogEntry(log, "GC/Pause loop");
+    heapAfterEntry = new DoubleLogEntry(log, "GC/Heap after MB");
+
+    threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    robotThreadId = Thread.currentThread().getId();
+    allocatedAtPublish = threadBean.getThreadAllocatedBytes(robotThreadId);
+
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      if (gc instanceof NotificationEmitter) {
+        ((NotificationEmitter) gc).addNotificationListener(GcMonitor::handleNotification,
+            notification -> notification.getType()
+                .equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION),
+            null);
+      }
+    }
+
+    // Record the collector settings so logs from different JVM profiles can be
+    // told apart
+    DataLogManager.log("JVM arguments: " + ManagementFactory.getRuntimeMXBean().getInputArguments());
+  }
+
+  // Marks the start of a robot loop
+  public static void loopStart() {
+    loopCount++;
+    int slot = (int) (loopCount % LOOP_HISTORY);
+    loopStarts[slot] = System.nanoTime();
+    loopDurations[slot] = 0;
+    loopPauseCounts[slot] = 0;
+  }
+
+  // Marks the end of a robot loop, matches new pause reports to loops, and
+  // counts the overrun of the loop that has now settled
+  public static void loopEnd() {
+    if (!started) {
+      return;
+    }
+    int slot = (int) (loopCount % LOOP_HISTORY);
+    loopDurations[slot] = System.nanoTime() - loopStarts[slot];
+
+    while (pauses.tryRead(drainRecord, NO_REFS)) {
+      recordPause();
+    }
+
+    long settled = loopCount - SETTLE_LOOPS;
+    if (settled > 0) {
+      int settledSlot = (int) (settled % LOOP_HISTORY);
+      if (loopDurations[settledSlot] > LOOP_PERIOD_NANOS) {
+        if (loopPauseCounts[settledSlot] > 0) {
+          gcOverruns++;
+        } else {
+          otherOverruns++;
+        }
+      }
+    }
+
+    if (++loopsSincePublish >= PUBLISH_PERIOD_LOOPS) {
+      loopsSincePublish = 0;
+      publish();
+    }
+  }
+
+  public static long getGcOverrunCount() {
+    return gcOverruns;
+  }
+
+  public static long getOtherOverrunCount() {
+    return otherOverruns;
+  }
+
+  // Finds the loop a pause started in and logs the pause
+  private static void recordPause() {
+    long pauseStart = (long) drainRecord[0];
+    double pauseMillis = drainRecord[1] / 1e6;
+    pauseCount++;
+    maxPauseMillis = Math.max(maxPauseMillis, pauseMillis);
+
+    // Heap allocated since the previous collection ended, over the time since
+    if (!Double.isNaN(heapUsedAfterGc) && pauseStart > lastGcEndNanos) {
+      heapAllocationRate = (drainRecord[2] - heapUsedAfterGc) / ((pauseStart - lastGcEndNanos) / 1e9);
+    }
+    heapUsedAfterGc = drainRecord[3];
+    lastGcEndNanos = pauseStart + drainRecord[1];
+
+    // The latest loop that had started by the time the pause started, if it
+    // had not yet ended. Every loop searched has ended, including the current
+    // one, whose duration is set before reports are drained. Loops that have
+    // already settled are not searched.
+    long pauseLoop = -1;
+    for (long loop = loopCount; loop > Math.max(0, loopCount - LOOP_HISTORY + SETTLE_LOOPS); loop--) {
+      int slot = (int) (loop % LOOP_HISTORY);
+      if (loopStarts[slot] <= pauseStart) {
+        if (pauseStart < loopStarts[slot] + loopDurations[slot]) {
+          pauseLoop = loop;
+        }
+        break;
+      }
+    }
+    if (pauseLoop > 0) {
+      loopPauseCounts[(int) (pauseLoop % LOOP_HISTORY)]++;
+    }
+
+    pauseEntry.append(pauseMillis);
+    pauseLoopEntry.append(pauseLoop);
+    heapAfterEntry.append(heapUsedAfterGc / BYTES_PER_MB);
+  }
+
+  private static void publish() {
+    long allocated = threadBean.getThreadAllocatedBytes(robotThreadId);
+    threadAllocationField.set((allocated - allocatedAtPublish) / 1024.0 / PUBLISH_PERIOD_LOOPS);
+    allocatedAtPublish = allocated;
+
+    Runtime runtime = Runtime.getRuntime();
+    heapUsedField.set((runtime.totalMemory() - runtime.freeMemory()) / BYTES_PER_MB);
+    heapAllocationField.set(heapAllocationRate / BYTES_PER_MB);
+    pausesField.set(pauseCount);
+    maxPauseField.set(maxPauseMillis);
+    gcOverrunsField.set(gcOverruns);
+    otherOverrunsField.set(otherOverruns);
+  }
+
+  // Runs on the JVM's notification thread after each collection
+  private static void handleNotification(Notification notification, Object handback) {
+    GarbageCollectionNotificationInfo info =
+        GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+    String name = info.getGcName();
+    if (name.contains("Concurrent") || name.contains("Cycles")) {
+      return;
+    }
+    GcInfo gcInfo = info.getGcInfo();
+    synchronized (pauses) {
+      pauseRecord[0] = uptimeOffsetNanos + gcInfo.getStartTime() * 1_000_000;
+      pauseRecord[1] = gcInfo.getDuration() * 1_000_000.0;
+      pauseRecord[2] = totalUsed(gcInfo.getMemoryUsageBeforeGc());
+      pauseRecord[3] = totalUsed(gcInfo.getMemoryUsageAfterGc());
+      pauses.tryWrite(pauseRecord, NO_REFS);
+    }
+  }
+
+  private static double totalUsed(Map<String, MemoryUsage> usage) {
+    double used = 0;
+    for (MemoryUsage pool : usage.values()) {
+      used += pool.getUsed();
+    }
+    return used;
+  }
+}
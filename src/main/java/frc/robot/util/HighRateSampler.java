@@ -0,0 +1,70 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Samples a fixed set of values on a {@link Notifier} that runs faster than the
+ * robot loop, and queues each timestamped sample in a {@link RecordRingBuffer}
+ * for the robot loop to consume. Sampling never blocks on the robot loop; if
+ * the loop falls far enough behind that the buffer fills, samples are dropped
+ * and counted.
+ *
+ * <p>
+ * Each sample is read back as an array whose first element is the FPGA
+ * timestamp in seconds, followed by the value of each source in order.
+ */
+public class HighRateSampler {
+  private static final Object[] NO_REFS = new Object[0];
+
+  private final DoubleSupplier[] sources;
+  private final RecordRingBuffer buffer;
+  private final double[] sample;
+  private final Notifier notifier;
+
+  public HighRateSampler(String name, int capacity, DoubleSupplier... sources) {
+    this.sources = sources;
+    buffer = new RecordRingBuffer(capacity, sources.length + 1, 0);
+    sample = new double[sources.length + 1];
+    notifier = new Notifier(this::sample);
+    notifier.setName(name);
+  }
+
+  public void start(double periodSeconds) {
+    notifier.startPeriodic(periodSeconds);
+  }
+
+  public void stop() {
+    notifier.stop();
+  }
+
+  // Copies the oldest unread sample into values. Returns false if there are
+  // none. Must only be called from one thread.
+  public boolean poll(double[] values) {
+    return buffer.tryRead(values, NO_REFS);
+  }
+
+  // Length of the array samples are read into
+  public int getWidth() {
+    return sample.length;
+  }
+
+  // Number of samples dropped because the buffer was full
+  public long getDroppedCount() {
+    return buffer.getDroppedCount();
+  }
+
+  private void sample() {
+    sample[0] = Timer.getFPGATimestamp();
+    for (int i = 0; i < sources.length; i++) {
+      sample[i + 1] = sources[i].getAsDouble();
+    }
+    buffer.tryWrite(sample, NO_REFS);
+  }
+}
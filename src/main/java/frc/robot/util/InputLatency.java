@@ -0,0 +1,98 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import edu.wpi.first.hal.DriverStationJNI;
+import edu.wpi.first.util.WPIUtilJNI;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotController;
+
+/**
+ * Measures how old driver station inputs are by the time they reach the
+ * motors. A background thread timestamps every driver station packet as it
+ * arrives. The robot loop then marks when it refreshed the inputs, when a
+ * command consumed them and when the resulting output was written, and the
+ * differences are recorded in {@link LoopTimer} histograms:
+ *
+ * <ul>
+ * <li>Packet to consume: age of the joystick data when the command read it
+ * <li>Consume to output: time from reading the joystick to writing the motors
+ * <li>Packet to output: total input-to-actuation latency
+ * </ul>
+ *
+ * <p>
+ * Nothing is recorded while motor outputs are muted, so commands run by a
+ * warmup pass while disabled do not add samples.
+ */
+public final class InputLatency {
+  private static final LoopTimer.Section packetToConsume = LoopTimer.section("Input/Packet to consume");
+  private static final LoopTimer.Section consumeToOutput = LoopTimer.section("Input/Consume to output");
+  private static final LoopTimer.Section packetToOutput = LoopTimer.section("Input/Packet to output");
+
+  // FPGA time at which the most recent driver station packet arrived
+  private static volatile long lastPacketMicros;
+
+  // Arrival time of the packet that the robot code is currently working from
+  private static long refreshedPacketMicros;
+  private static long consumedMicros;
+
+  private InputLatency() {}
+
+  // Starts the thread that timestamps incoming driver station packets
+  public static void start() {
+    Thread thread = new Thread(InputLatency::waitForPackets, "Input latency");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  // Marks that the robot code is about to refresh its driver station inputs
+  // (TimedRobot does this at the start of every loop)
+  public static void markRefresh() {
+    refreshedPacketMicros = lastPacketMicros;
+  }
+
+  // Refreshes the driver station inputs right now, so that they are as new as
+  // possible, and marks the refresh
+  public static void refreshNow() {
+    markRefresh();
+    DriverStation.refreshData();
+  }
+
+  // Marks that a command has just read the driver station inputs
+  public static void markConsumed() {
+    if (!LoopTimer.isEnabled() || CachedMotorOutput.isMuted() || refreshedPacketMicros == 0) {
+      return;
+    }
+    consumedMicros = RobotController.getFPGATime();
+    packetToConsume.record((consumedMicros - refreshedPacketMicros) * 1000);
+  }
+
+  // Marks that the output computed from the consumed inputs has been written
+  public static void markWritten() {
+    if (!LoopTimer.isEnabled() || CachedMotorOutput.isMuted() || consumedMicros == 0) {
+      return;
+    }
+    long now = RobotController.getFPGATime();
+    consumeToOutput.record((now - consumedMicros) * 1000);
+    packetToOutput.record((now - refreshedPacketMicros) * 1000);
+    consumedMicros = 0;
+  }
+
+  private static void waitForPackets() {
+    int event = WPIUtilJNI.createEvent(false, false);
+    DriverStationJNI.provideNewDataEventHandle(event);
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        WPIUtilJNI.waitForObject(event);
+        lastPacketMicros = RobotController.getFPGATime();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      DriverStationJNI.removeNewDataEventHandle(event);
+      WPIUtilJNI.destroyEvent(event);
+    }
+  }
+}
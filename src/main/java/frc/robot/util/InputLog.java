@@ -0,0 +1,454 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import edu.wpi.first.hal.AllianceStationID;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
+import static frc.robot.Constants.ReplayConstants.*;
+
+/**
+ * Records everything the robot code reads from outside itself, every loop, so
+ * a match can be replayed later in simulation. Each record holds the driver
+ * station state, the controller's axes and buttons, the value of every
+ * {@link LoggedInput} read in the loop, and the setpoint of every
+ * {@link CachedMotorOutput} at the end of the loop so replayed outputs can be
+ * compared against the recorded ones.
+ *
+ * <p>
+ * The robot thread copies each record into a ring buffer, and a background
+ * thread writes them to a compact binary file, so recording never blocks the
+ * loop on file I/O. Old recordings are deleted to keep the number of files and
+ * the free space on the robot within limits, and recording stops if the disk
+ * fills anyway. During replay, {@link LoggedInput}s return the values from
+ * the record being replayed instead of reading their sources.
+ */
+public final class InputLog {
+  private static final int MAGIC = 0x4B42494E;
+  private static final int VERSION = 1;
+  private static final int MAX_AXES = 12;
+  private static final int MAX_BUTTONS = 32;
+
+  // Layout of a record in memory. Records are written to the file with
+  // narrower types where that loses nothing.
+  public static final int LOOP = 0;
+  public static final int TIMESTAMP = 1;
+  public static final int DS_FLAGS = 2;
+  public static final int ALLIANCE = 3;
+  public static final int MATCH_TIME = 4;
+  public static final int AXIS_COUNT = 5;
+  public static final int AXES = 6;
+  public static final int BUTTON_COUNT = AXES + MAX_AXES;
+  public static final int BUTTONS = BUTTON_COUNT + 1;
+  public static final int INPUTS = BUTTONS + 1;
+
+  // Bits of the DS_FLAGS field
+  public static final int ENABLED = 1;
+  public static final int AUTONOMOUS = 2;
+  public static final int TEST = 4;
+  public static final int ESTOPPED = 8;
+  public static final int DS_ATTACHED = 16;
+  public static final int FMS_ATTACHED = 32;
+
+  private static final Object[] NO_REFS = new Object[0];
+
+  // Every input that has been created, in creation order
+  private static final List<LoggedInput> inputs = new ArrayList<>();
+
+  private static volatile Thread loopThread;
+  private static long loopCount;
+
+  // Recording state, set up by startRecording
+  private static int joystickPort;
+  private static int recordedInputCount;
+  private static List<CachedMotorOutput> outputs;
+  private static double[] record;
+  private static RecordRingBuffer buffer;
+
+  // Replay state. replayPositions maps each input's index to its position in
+  // the replayed record, or -1 if the recording does not have it.
+  private static int[] replayPositions;
+  private static volatile double[] replayRecord;
+
+  private InputLog() {}
+
+  static int register(LoggedInput input) {
+    synchronized (inputs) {
+      inputs.add(input);
+      return inputs.size() - 1;
+    }
+  }
+
+  static boolean isLoopThread() {
+    return Thread.currentThread() == loopThread;
+  }
+
+  // Number of loops that have started. Inputs read in the same loop share one
+  // snapshot.
+  public static long getLoopCount() {
+    return loopCount;
+  }
+
+  // Returns true if recording in simulation was asked for with the
+  // KITBOT_RECORD environment variable. On the robot, recording is always on.
+  public static boolean isRecordingRequested() {
+    return System.getenv("KITBOT_RECORD") != null;
+  }
+
+  // Starts recording to a new file in the given directory. Only the inputs and
+  // outputs created so far are recorded, so this should be called after the
+  // robot has been constructed.
+  public static void startRecording(File directory, int port) {
+    directory.mkdirs();
+    if (!makeRoom(directory)) {
+      DriverStation.reportWarning("Not recording inputs: less than "
+          + INPUT_LOG_MIN_FREE_BYTES / (1024 * 1024) + " MB free in " + directory, false);
+      return;
+    }
+    File file = new File(directory, String.format("inputs_%d.kbin", System.currentTimeMillis()));
+    List<String> inputNames = new ArrayList<>();
+    synchronized (inputs) {
+      for (LoggedInput input : inputs) {
+        inputNames.add(input.getName());
+      }
+    }
+    List<String> outputNames = new ArrayList<>();
+    outputs = CachedMotorOutput.getAll();
+    for (CachedMotorOutput output : outputs) {
+      outputNames.add(output.getName());
+    }
+
+    DataOutputStream out;
+    try {
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeByte(port);
+      writeNames(out, inputNames);
+      writeNames(out, outputNames);
+    } catch (IOException e) {
+      DriverStation.reportError("Could not start input log " + file + ": " + e, e.getStackTrace());
+      return;
+    }
+
+    joystickPort = port;
+    recordedInputCount = inputNames.size();
+    int width = INPUTS + recordedInputCount + outputs.size();
+    buffer = new RecordRingBuffer(INPUT_LOG_BUFFER_CAPACITY, width, 0);
+    Thread writer = new Thread(new Writer(buffer, out, directory, recordedInputCount, outputs.size()),
+        "Input log writer");
+    writer.setDaemon(true);
+    writer.start();
+    record = new double[buffer.getValueWidth()];
+    DataLogManager.log("Recording inputs to " + file);
+  }
+
+  // Makes inputs return values from replayed records instead of their
+  // sources. Inputs are matched to the recording by name.
+  public static void startReplay(List<String> recordedInputNames) {
+    synchronized (inputs) {
+      replayPositions = new int[inputs.size()];
+      for (int i = 0; i < inputs.size(); i++) {
+        int position = recordedInputNames.indexOf(inputs.get(i).getName());
+        replayPositions[i] = position < 0 ? -1 : INPUTS + position;
+      }
+    }
+  }
+
+  // Sets the record whose input values the next loop will read
+  public static void setReplayRecord(double[] replayed) {
+    replayRecord = replayed;
+  }
+
+  // Starts a new loop. Must be called on the robot thread at the very start of
+  // each loop.
+  public static void beginLoop() {
+    loopThread = Thread.currentThread();
+    loopCount++;
+    if (record != null) {
+      Arrays.fill(record, Double.NaN);
+      record[LOOP] = loopCount;
+      record[TIMESTAMP] = Timer.getFPGATimestamp();
+    }
+  }
+
+  // Records the driver station state and controller inputs. Must be called
+  // after the driver station data has been refreshed for this loop, and before
+  // it is refreshed again.
+  public static void captureDriverStation() {
+    if (record == null) {
+      return;
+    }
+    int flags = 0;
+    flags |= DriverStation.isEnabled() ? ENABLED : 0;
+    flags |= DriverStation.isAutonomous() ? AUTONOMOUS : 0;
+    flags |= DriverStation.isTest() ? TEST : 0;
+    flags |= DriverStation.isEStopped() ? ESTOPPED : 0;
+    flags |= DriverStation.isDSAttached() ? DS_ATTACHED : 0;
+    flags |= DriverStation.isFMSAttached() ? FMS_ATTACHED : 0;
+    record[DS_FLAGS] = flags;
+    record[ALLIANCE] = DriverStation.getRawAllianceStation().ordinal();
+    record[MATCH_TIME] = DriverStation.getMatchTime();
+
+    int axisCount = Math.min(DriverStation.getStickAxisCount(joystickPort), MAX_AXES);
+    record[AXIS_COUNT] = axisCount;
+    for (int i = 0; i < axisCount; i++) {
+      record[AXES + i] = DriverStation.getStickAxis(joystickPort, i);
+    }
+    int buttonCount = Math.min(DriverStation.getStickButtonCount(joystickPort), MAX_BUTTONS);
+    int buttons = 0;
+    for (int i = 0; i < buttonCount; i++) {
+      if (DriverStation.getStickButton(joystickPort, i + 1)) {
+        buttons |= 1 << i;
+      }
+    }
+    record[BUTTON_COUNT] = buttonCount;
+    record[BUTTONS] = buttons;
+  }
+
+  // Records the output setpoints and hands the finished record to the writer.
+  // Must be called on the robot thread at the very end of each loop.
+  public static void endLoop() {
+    if (record == null) {
+      return;
+    }
+    int offset = INPUTS + recordedInputCount;
+    for (int i = 0; i < outputs.size(); i++) {
+      record[offset + i] = outputs.get(i).getSetpoint();
+    }
+    buffer.tryWrite(record, NO_REFS);
+  }
+
+  // Number of records dropped because the writer fell behind
+  public static long getDroppedCount() {
+    return buffer == null ? 0 : buffer.getDroppedCount();
+  }
+
+  // Returns this loop's value of an input, from the replayed record or from
+  // its source. Inputs the recording did not see this loop are read from
+  // their source even during replay.
+  static double read(LoggedInput input) {
+    int index = input.getIndex();
+    if (replayPositions != null && replayRecord != null && index < replayPositions.length
+        && replayPositions[index] >= 0) {
+      double value = replayRecord[replayPositions[index]];
+      if (!Double.isNaN(value)) {
+        return value;
+      }
+    }
+    double value = input.readSource();
+    if (record != null && index < recordedInputCount) {
+      record[INPUTS + index] = value;
+    }
+    return value;
+  }
+
+  // Deletes the oldest recordings in the directory until there is room for a
+  // new one. Returns false if there is still too little free space.
+  private static boolean makeRoom(File directory) {
+    File[] files = directory.listFiles((dir, name) -> name.startsWith("inputs_") && name.endsWith(".kbin"));
+    if (files == null) {
+      files = new File[0];
+    }
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+    int remaining = files.length;
+    for (File oldest : files) {
+      if (remaining < INPUT_LOG_MAX_FILES && directory.getUsableSpace() >= INPUT_LOG_MIN_FREE_BYTES) {
+        break;
+      }
+      if (oldest.delete()) {
+        DataLogManager.log("Deleted old input log " + oldest);
+      }
+      remaining--;
+    }
+    return directory.getUsableSpace() >= INPUT_LOG_MIN_FREE_BYTES;
+  }
+
+  private static void writeNames(DataOutputStream out, List<String> names) throws IOException {
+    out.writeInt(names.size());
+    for (String name : names) {
+      out.writeUTF(name);
+    }
+  }
+
+  private static List<String> readNames(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    List<String> names = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      names.add(in.readUTF());
+    }
+    return names;
+  }
+
+  // Drains the ring buffer into the file on a background thread. Once free
+  // space falls below the minimum the file is closed and records are drained
+  // without being written.
+  private static final class Writer implements Runnable {
+    private final RecordRingBuffer buffer;
+    private final DataOutputStream out;
+    private final File directory;
+    private final int inputCount;
+    private final int outputCount;
+    private final double[] values;
+
+    Writer(RecordRingBuffer buffer, DataOutputStream out, File directory, int inputCount, int outputCount) {
+      this.buffer = buffer;
+      this.out = out;
+      this.directory = directory;
+      this.inputCount = inputCount;
+      this.outputCount = outputCount;
+      values = new double[buffer.getValueWidth()];
+    }
+
+    @Override
+    public void run() {
+      long periodMillis = (long) (INPUT_LOG_WRITER_PERIOD_SECONDS * 1000);
+      boolean writing = true;
+      try {
+        while (!Thread.currentThread().isInterrupted()) {
+          while (buffer.tryRead(values, NO_REFS)) {
+            if (writing) {
+              write();
+            }
+          }
+          if (writing) {
+            out.flush();
+            if (directory.getUsableSpace() < INPUT_LOG_MIN_FREE_BYTES) {
+              writing = false;
+              out.close();
+              DriverStation.reportWarning("Stopped recording inputs: less than "
+                  + INPUT_LOG_MIN_FREE_BYTES / (1024 * 1024) + " MB free in " + directory, false);
+            }
+          }
+
+          try {
+            Thread.sleep(periodMillis);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      } catch (IOException e) {
+        DriverStation.reportError("Input log write failed: " + e, e.getStackTrace());
+      }
+    }
+
+    private void write() throws IOException {
+      out.writeInt((int) values[LOOP]);
+      out.writeDouble(values[TIMESTAMP]);
+      out.writeByte((int) values[DS_FLAGS]);
+      out.writeByte((int) values[ALLIANCE]);
+      out.writeFloat((float) values[MATCH_TIME]);
+      // The driver station sends axes and buttons as bytes and bits, so floats
+      // and a bit mask hold them exactly
+      int axisCount = Double.isNaN(values[AXIS_COUNT]) ? 0 : (int) values[AXIS_COUNT];
+      out.writeByte(axisCount);
+      for (int i = 0; i < axisCount; i++) {
+        out.writeFloat((float) values[AXES + i]);
+      }
+      int buttonCount = Double.isNaN(values[BUTTON_COUNT]) ? 0 : (int) values[BUTTON_COUNT];
+      out.writeByte(buttonCount);
+      out.writeInt(buttonCount == 0 ? 0 : (int) values[BUTTONS]);
+      for (int i = 0; i < inputCount + outputCount; i++) {
+        out.writeDouble(values[INPUTS + i]);
+      }
+    }
+  }
+
+  /**
+   * Reads back a file written by the input log, one record at a time, into the
+   * same layout the robot recorded them in.
+   */
+  public static final class Reader implements Closeable {
+    private final DataInputStream in;
+    private final int port;
+    private final List<String> inputNames;
+    private final List<String> outputNames;
+
+    public Reader(File file) throws IOException {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        in.close();
+        throw new IOException(file + " is not an input log this code can read");
+      }
+      port = in.readByte();
+      inputNames = readNames(in);
+      outputNames = readNames(in);
+    }
+
+    // Port of the controller whose inputs were recorded
+    public int getJoystickPort() {
+      return port;
+    }
+
+    public List<String> getInputNames() {
+      return inputNames;
+    }
+
+    public List<String> getOutputNames() {
+      return outputNames;
+    }
+
+    // Position of the first output in a record
+    public int getOutputOffset() {
+      return INPUTS + inputNames.size();
+    }
+
+    // Length of the array records are read into
+    public int getWidth() {
+      return getOutputOffset() + outputNames.size();
+    }
+
+    // Reads the next record. Returns false at the end of the file, including
+    // when the last record was only partly written.
+    public boolean next(double[] values) throws IOException {
+      try {
+        values[LOOP] = in.readInt();
+        values[TIMESTAMP] = in.readDouble();
+        values[DS_FLAGS] = in.readByte();
+        values[ALLIANCE] = in.readByte();
+        values[MATCH_TIME] = in.readFloat();
+        int axisCount = in.readByte();
+        values[AXIS_COUNT] = axisCount;
+        for (int i = 0; i < axisCount; i++) {
+          values[AXES + i] = in.readFloat();
+        }
+        values[BUTTON_COUNT] = in.readByte();
+        values[BUTTONS] = in.readInt();
+        for (int i = INPUTS; i < getWidth(); i++) {
+          values[i] = in.readDouble();
+        }
+        return true;
+      } catch (EOFException e) {
+        return false;
+      }
+    }
+
+    // Returns the alliance station stored in a record
+    public static AllianceStationID getAllianceStation(double[] values) {
+      return AllianceStationID.values()[(int) values[ALLIANCE]];
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
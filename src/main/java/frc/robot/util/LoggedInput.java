@@ -0,0 +1,76 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+
+/**
+ * A value the robot code reads from outside itself, such as a sensor, a
+ * dashboard setting or the result of a background detector, that is recorded
+ * by the {@link InputLog} so it can be replayed.
+ *
+ * <p>
+ * On the robot loop thread the value is read from its source the first time it
+ * is asked for in a loop, and the same value is returned for the rest of that
+ * loop. That makes every loop see one consistent snapshot, which is what gets
+ * recorded and what replay returns. Reads from any other thread go straight to
+ * the source and are not recorded.
+ */
+public final class LoggedInput {
+  private final String name;
+  private final DoubleSupplier source;
+  private final int index;
+
+  private long loop = -1;
+  private double value;
+
+  private LoggedInput(String name, DoubleSupplier source) {
+    this.name = name;
+    this.source = source;
+    this.index = InputLog.register(this);
+  }
+
+  // Creates and registers a numeric input. Inputs should be created during
+  // construction, before the input log starts recording.
+  public static LoggedInput of(String name, DoubleSupplier source) {
+    return new LoggedInput(name, source);
+  }
+
+  // Creates and registers a true/false input, recorded as 1 or 0
+  public static LoggedInput ofBoolean(String name, BooleanSupplier source) {
+    return new LoggedInput(name, () -> source.getAsBoolean() ? 1 : 0);
+  }
+
+  // Returns this loop's value of the input
+  public double get() {
+    if (!InputLog.isLoopThread()) {
+      return source.getAsDouble();
+    }
+    long current = InputLog.getLoopCount();
+    if (loop != current) {
+      loop = current;
+      value = InputLog.read(this);
+    }
+    return value;
+  }
+
+  // Returns this loop's value of a true/false input
+  public boolean getBoolean() {
+    return get() != 0;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  int getIndex() {
+    return index;
+  }
+
+  double readSource() {
+    return source.getAsDouble();
+  }
+}
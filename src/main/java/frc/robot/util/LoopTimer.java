@@ -0,0 +1,246 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import static frc.robot.Constants.TelemetryConstants.DIAGNOSTICS_TELEMETRY_PERIOD_SECONDS;
+
+/**
+ * Low-overhead timing for the robot loop. Each timed piece of code (the whole
+ * loop, the scheduler, a subsystem's periodic method, a command's execute
+ * method) gets a {@link Section} with a fixed-size latency histogram. Recording
+ * a sample is two {@link System#nanoTime()} calls and an array increment, with
+ * no allocation. Percentiles are published to the dashboard once per publish
+ * window and the histograms are then cleared.
+ *
+ * <p>
+ * Commands are timed by name, so every instance of a command that is rebuilt,
+ * such as an autonomous routine, shares one section. The sections for the
+ * commands the robot can run are created at startup.
+ *
+ * <p>
+ * Timing can be switched off from the dashboard with the "Loop timing enabled"
+ * switch, in which case {@link Section#start()} returns without reading the
+ * clock and {@link Section#stop(long)} does nothing.
+ */
+public final class LoopTimer {
+  // Width of each histogram bucket and number of buckets. Samples longer than
+  // the last bucket are counted in it, and the exact maximum is tracked
+  // separately.
+  private static final long BUCKET_WIDTH_NANOS = 100_000;
+  private static final int BUCKET_COUNT = 251;
+
+  // Number of loops between publishes (5 seconds at the default period)
+  private static final int PUBLISH_PERIOD_LOOPS = 250;
+
+  private static final long LOOP_PERIOD_NANOS = (long) (TimedRobot.kDefaultPeriod * 1e9);
+
+  // Returned by Section.start() when timing is switched off
+  private static final long NOT_TIMING = Long.MIN_VALUE;
+
+  private static final TunableBoolean enabled = new TunableBoolean("Loop timing enabled", true);
+
+  // Dashboard values, sent only when they change. Created before any section.
+  private static final TelemetryGroup telemetry =
+      new TelemetryGroup("Timing", DIAGNOSTICS_TELEMETRY_PERIOD_SECONDS);
+  private static final TelemetryGroup.DoubleField overrunsField = telemetry.addDouble("Overruns");
+
+  private static final List<Section> sections = new ArrayList<>();
+  private static final Map<String, Section> commandSections = new HashMap<>();
+
+  private static final Section loopSection = section("Loop");
+
+  private static long loopStartNanos = NOT_TIMING;
+  private static long commandMarkNanos = NOT_TIMING;
+  private static int loopsSincePublish;
+  private static long overruns;
+
+  private LoopTimer() {}
+
+  // Creates a new timed section. Sections should be created once, at startup.
+  public static Section section(String name) {
+    Section section = new Section(name);
+    sections.add(section);
+    return section;
+  }
+
+  // Hooks the command scheduler so that each scheduled command's execute() is
+  // timed, and creates a section for each of the given command names. Must be
+  // called after all trigger bindings have been made, so that the mark below
+  // runs after every binding has been polled.
+  public static void installCommandHooks(Collection<String> commandNames) {
+    for (String name : commandNames) {
+      commandSection(name);
+    }
+
+    CommandScheduler scheduler = CommandScheduler.getInstance();
+    // Button polling happens after subsystem periodics and right before
+    // commands are executed, so the last binding on the default loop marks the
+    // start of command execution
+    scheduler.getDefaultButtonLoop().bind(LoopTimer::markCommands);
+    // Execute callbacks run right after each command's execute(), so the time
+    // since the previous mark is the time that command took
+    scheduler.onCommandExecute(LoopTimer::commandExecuted);
+    // A command that finishes runs isFinished() and end() after its execute
+    // callback, and an interrupted one runs end(). Move the mark past those,
+    // so they are not counted as part of the next command's execute().
+    scheduler.onCommandFinish(command -> remarkCommands());
+    scheduler.onCommandInterrupt(command -> remarkCommands());
+  }
+
+  // Marks the start of a robot loop
+  public static void loopStart() {
+    loopStartNanos = loopSection.start();
+  }
+
+  // Marks the end of a robot loop, and publishes the histograms once per
+  // publish window
+  public static void loopEnd() {
+    if (loopStartNanos != NOT_TIMING) {
+      long duration = System.nanoTime() - loopStartNanos;
+      loopSection.record(duration);
+      if (duration > LOOP_PERIOD_NANOS) {
+        overruns++;
+      }
+    }
+
+    if (++loopsSincePublish >= PUBLISH_PERIOD_LOOPS) {
+      loopsSincePublish = 0;
+      publish();
+    }
+  }
+
+  public static boolean isEnabled() {
+    return enabled.get();
+  }
+
+  // Number of loops that took longer than the loop period since startup
+  public static long getOverrunCount() {
+    return overruns;
+  }
+
+  private static void markCommands() {
+    commandMarkNanos = isEnabled() ? System.nanoTime() : NOT_TIMING;
+  }
+
+  private static void remarkCommands() {
+    if (commandMarkNanos != NOT_TIMING) {
+      commandMarkNanos = System.nanoTime();
+    }
+  }
+
+  private static void commandExecuted(Command command) {
+    if (commandMarkNanos == NOT_TIMING) {
+      return;
+    }
+    long now = System.nanoTime();
+    Section section = commandSections.get(command.getName());
+    if (section == null) {
+      // A command that was not named at startup gets a section the first time
+      // it runs, once per name
+      section = commandSection(command.getName());
+    }
+    section.record(now - commandMarkNanos);
+    commandMarkNanos = now;
+  }
+
+  // Returns the section for a command name, creating it if needed
+  private static Section commandSection(String name) {
+    Section section = commandSections.get(name);
+    if (section == null) {
+      section = section("Command/" + name);
+      commandSections.put(name, section);
+    }
+    return section;
+  }
+
+  private static void publish() {
+    overrunsField.set(overruns);
+    for (int i = 0; i < sections.size(); i++) {
+      sections.get(i).publish();
+    }
+  }
+
+  /** A piece of code timed with its own latency histogram. */
+  public static final class Section {
+    private final int[] buckets = new int[BUCKET_COUNT];
+    private final TelemetryGroup.DoubleField p50Field;
+    private final TelemetryGroup.DoubleField p99Field;
+    private final TelemetryGroup.DoubleField maxField;
+    private int count;
+    private long maxNanos;
+
+    private Section(String name) {
+      p50Field = telemetry.addDouble(name + "/p50 ms");
+      p99Field = telemetry.addDouble(name + "/p99 ms");
+      maxField = telemetry.addDouble(name + "/max ms");
+    }
+
+    // Returns a start timestamp to pass to stop(), or a sentinel if timing is
+    // switched off
+    public long start() {
+      return isEnabled() ? System.nanoTime() : NOT_TIMING;
+    }
+
+    // Records the time since the matching call to start()
+    public void stop(long startNanos) {
+      if (startNanos != NOT_TIMING) {
+        record(System.nanoTime() - startNanos);
+      }
+    }
+
+    // Records a duration measured elsewhere
+    public void record(long nanos) {
+      int bucket = (int) Math.min(Math.max(nanos, 0) / BUCKET_WIDTH_NANOS, BUCKET_COUNT - 1);
+      buckets[bucket]++;
+      count++;
+      if (nanos > maxNanos) {
+        maxNanos = nanos;
+      }
+    }
+
+    // Returns the given percentile (0 to 1) of the current window in
+    // milliseconds, using the upper edge of the bucket it falls in
+    public double getPercentileMillis(double percentile) {
+      if (count == 0) {
+        return 0;
+      }
+      int target = (int) Math.ceil(percentile * count);
+      int seen = 0;
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        seen += buckets[i];
+        if (seen >= target) {
+          return i == BUCKET_COUNT - 1 ? getMaxMillis() : (i + 1) * BUCKET_WIDTH_NANOS / 1e6;
+        }
+      }
+      return getMaxMillis();
+    }
+
+    public double getMaxMillis() {
+      return maxNanos / 1e6;
+    }
+
+    private void publish() {
+      if (count == 0) {
+        return;
+      }
+      p50Field.set(getPercentileMillis(0.5));
+      p99Field.set(getPercentileMillis(0.99));
+      maxField.set(getMaxMillis());
+      Arrays.fill(buckets, 0);
+      count = 0;
+      maxNanos = 0;
+    }
+  }
+}
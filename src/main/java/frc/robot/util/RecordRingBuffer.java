@@ -0,0 +1,91 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A preallocated single-producer, single-consumer ring buffer of fixed-width
+ * records. Each record holds a fixed number of doubles and a fixed number of
+ * object references. Writing never blocks and never allocates: if the consumer
+ * has fallen behind and the buffer is full, the record is dropped and counted.
+ *
+ * <p>
+ * Exactly one thread may call {@link #tryWrite} and exactly one (other) thread
+ * may call {@link #tryRead}.
+ */
+public class RecordRingBuffer {
+  private final int capacity;
+  private final int valueWidth;
+  private final int refWidth;
+  private final double[] values;
+  private final Object[] refs;
+
+  // Index of the next record to write, only advanced by the producer
+  private final AtomicLong head = new AtomicLong();
+  // Index of the next record to read, only advanced by the consumer
+  private final AtomicLong tail = new AtomicLong();
+  private volatile long dropped;
+
+  public RecordRingBuffer(int capacity, int valueWidth, int refWidth) {
+    this.capacity = capacity;
+    this.valueWidth = valueWidth;
+    this.refWidth = refWidth;
+    values = new double[capacity * valueWidth];
+    refs = new Object[capacity * refWidth];
+  }
+
+  // Copies a record into the buffer. Returns false and counts a drop if the
+  // buffer is full.
+  public boolean tryWrite(double[] recordValues, Object[] recordRefs) {
+    long h = head.get();
+    if (h - tail.get() >= capacity) {
+      dropped++;
+      return false;
+    }
+    int slot = (int) (h % capacity);
+    System.arraycopy(recordValues, 0, values, slot * valueWidth, valueWidth);
+    if (refWidth > 0) {
+      System.arraycopy(recordRefs, 0, refs, slot * refWidth, refWidth);
+    }
+    // Publish the record only after it has been fully copied
+    head.lazySet(h + 1);
+    return true;
+  }
+
+  // Copies the oldest record out of the buffer. Returns false if the buffer is
+  // empty.
+  public boolean tryRead(double[] recordValues, Object[] recordRefs) {
+    long t = tail.get();
+    if (t >= head.get()) {
+      return false;
+    }
+    int slot = (int) (t % capacity);
+    System.arraycopy(values, slot * valueWidth, recordValues, 0, valueWidth);
+    if (refWidth > 0) {
+      System.arraycopy(refs, slot * refWidth, recordRefs, 0, refWidth);
+      // Don't keep objects alive from the buffer once they have been read
+      for (int i = slot * refWidth; i < (slot + 1) * refWidth; i++) {
+        refs[i] = null;
+      }
+    }
+    // Hand the slot back to the producer only after it has been copied out
+    tail.lazySet(t + 1);
+    return true;
+  }
+
+  // Number of records dropped because the buffer was full
+  public long getDroppedCount() {
+    return dropped;
+  }
+
+  public int getValueWidth() {
+    return valueWidth;
+  }
+
+  public int getRefWidth() {
+    return refWidth;
+  }
+}
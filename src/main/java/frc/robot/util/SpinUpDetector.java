@@ -0,0 +1,128 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Detects when a brushed roller has finished spinning up by watching its
+ * current draw. When a roller starts from rest it pulls a large inrush current
+ * (often held flat at the current limit), which decays as the roller reaches
+ * speed. The roller is declared ready once the current has dropped well below
+ * its peak and both the current and the bus voltage have stopped changing. If
+ * the roller was already at speed there is no inrush, so it is declared ready
+ * as soon as the readings are steady.
+ *
+ * <p>
+ * Samples are taken on a {@link Notifier} that runs faster than the robot loop,
+ * and only while the detector has been started.
+ */
+public class SpinUpDetector {
+  // Weight given to each new sample by the low-pass filters
+  private static final double FILTER_ALPHA = 0.3;
+
+  private final DoubleSupplier current;
+  private final DoubleSupplier busVoltage;
+  private final double samplePeriodSeconds;
+  private final double minSeconds;
+  private final double inrushAmps;
+  private final double settledFraction;
+  private final double settledAmpsPerSecond;
+  private final double settledVoltsPerSecond;
+  private final int settledSamples;
+  private final Notifier notifier;
+
+  private volatile boolean ready;
+  private double startTime;
+  private double lastTime;
+  private double filteredCurrent;
+  private double filteredVoltage;
+  private double peakCurrent;
+  private int settledCount;
+  private boolean firstSample;
+
+  public SpinUpDetector(DoubleSupplier current, DoubleSupplier busVoltage, double samplePeriodSeconds,
+      double minSeconds, double inrushAmps, double settledFraction, double settledAmpsPerSecond,
+      double settledVoltsPerSecond, int settledSamples) {
+    this.current = current;
+    this.busVoltage = busVoltage;
+    this.samplePeriodSeconds = samplePeriodSeconds;
+    this.minSeconds = minSeconds;
+    this.inrushAmps = inrushAmps;
+    this.settledFraction = settledFraction;
+    this.settledAmpsPerSecond = settledAmpsPerSecond;
+    this.settledVoltsPerSecond = settledVoltsPerSecond;
+    this.settledSamples = settledSamples;
+    notifier = new Notifier(this::sample);
+    notifier.setName("Spin-up detector");
+  }
+
+  // Clears any previous result and starts sampling
+  public synchronized void start() {
+    ready = false;
+    firstSample = true;
+    startTime = Timer.getFPGATimestamp();
+    peakCurrent = 0;
+    settledCount = 0;
+    notifier.startPeriodic(samplePeriodSeconds);
+  }
+
+  // Stops sampling. The last result is kept until the next start.
+  public void stop() {
+    notifier.stop();
+  }
+
+  // Returns true once the roller has been detected to be at speed
+  public boolean isReady() {
+    return ready;
+  }
+
+  private synchronized void sample() {
+    double now = Timer.getFPGATimestamp();
+    double amps = current.getAsDouble();
+    double volts = busVoltage.getAsDouble();
+
+    if (firstSample) {
+      filteredCurrent = amps;
+      filteredVoltage = volts;
+      lastTime = now;
+      firstSample = false;
+      return;
+    }
+
+    double dt = now - lastTime;
+    if (dt <= 0) {
+      return;
+    }
+    lastTime = now;
+
+    double lastCurrent = filteredCurrent;
+    double lastVoltage = filteredVoltage;
+    filteredCurrent += FILTER_ALPHA * (amps - filteredCurrent);
+    filteredVoltage += FILTER_ALPHA * (volts - filteredVoltage);
+    peakCurrent = Math.max(peakCurrent, filteredCurrent);
+
+    double currentSlope = Math.abs(filteredCurrent - lastCurrent) / dt;
+    double voltageSlope = Math.abs(filteredVoltage - lastVoltage) / dt;
+
+    // Either there was no inrush (already at speed), or the current has fallen
+    // away from the inrush peak
+    boolean pastInrush = peakCurrent < inrushAmps || filteredCurrent <= peakCurrent * settledFraction;
+    boolean steady = currentSlope < settledAmpsPerSecond && voltageSlope < settledVoltsPerSecond;
+
+    if (pastInrush && steady) {
+      settledCount++;
+    } else {
+      settledCount = 0;
+    }
+
+    if (now - startTime >= minSeconds && settledCount >= settledSamples) {
+      ready = true;
+    }
+  }
+}
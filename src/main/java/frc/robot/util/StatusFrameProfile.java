@@ -0,0 +1,130 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import com.ctre.phoenix.motorcontrol.StatusFrame;
+import com.ctre.phoenix.motorcontrol.StatusFrameEnhanced;
+import com.ctre.phoenix.motorcontrol.can.TalonSRX;
+import com.ctre.phoenix.motorcontrol.can.VictorSPX;
+import com.ctre.phoenix6.hardware.ParentDevice;
+import com.revrobotics.spark.config.SparkMaxConfig;
+
+import edu.wpi.first.wpilibj.Preferences;
+import edu.wpi.first.wpilibj.RobotBase;
+
+/**
+ * How often motor controllers send each of their status frames. Every frame a
+ * controller sends takes up CAN bus time, whether or not the robot code reads
+ * it, so frames are grouped by what they are used for and only the ones used
+ * for control are sent quickly during a match. No frame is sent faster than
+ * the controller's default unless something reads it faster than the robot
+ * loop, and frames read once per loop are sent every 20 ms. The pit profile
+ * sends the diagnostic frames quickly too, and is chosen with the "Pit
+ * diagnostics" preference. The simulation profile is used whenever running in
+ * simulation, where there is no real bus to load.
+ */
+public enum StatusFrameProfile {
+  MATCH(10, 20, 160, 250, 255),
+  PIT(10, 20, 20, 20, 100),
+  SIM(10, 20, 20, 20, 20);
+
+  // Name of the preference that selects the pit profile
+  public static final String PIT_DIAGNOSTICS_KEY = "Pit diagnostics";
+
+  // Frames sampled by odometry faster than the robot loop, such as encoder
+  // positions. Twice the loop rate, while the gyro is sampled every
+  // odometry sample.
+  private final int sensorPeriodMs;
+  // Frames read once per loop for control, such as applied output
+  private final int controlPeriodMs;
+  // Frames only logged or shown on the dashboard, such as bus voltage. No
+  // faster than the Talon SRX default in a match.
+  private final int telemetryPeriodMs;
+  // Frames only looked at when diagnosing problems, such as faults and
+  // temperature
+  private final int diagnosticsPeriodMs;
+  // Frames nothing on the robot reads
+  private final int unusedPeriodMs;
+
+  StatusFrameProfile(int sensorPeriodMs, int controlPeriodMs, int telemetryPeriodMs,
+      int diagnosticsPeriodMs, int unusedPeriodMs) {
+    this.sensorPeriodMs = sensorPeriodMs;
+    this.controlPeriodMs = controlPeriodMs;
+    this.telemetryPeriodMs = telemetryPeriodMs;
+    this.diagnosticsPeriodMs = diagnosticsPeriodMs;
+    this.unusedPeriodMs = unusedPeriodMs;
+  }
+
+  // Returns the profile to use for this run. The pit preference only takes
+  // effect on the next boot, since frame periods are set during configuration.
+  public static StatusFrameProfile select() {
+    Preferences.initBoolean(PIT_DIAGNOSTICS_KEY, false);
+    if (RobotBase.isSimulation()) {
+      return SIM;
+    }
+    return Preferences.getBoolean(PIT_DIAGNOSTICS_KEY, false) ? PIT : MATCH;
+  }
+
+  // Sets the status frame periods of a Talon SRX that is driven in percent
+  // output with a quadrature encoder as its selected sensor. The periods are
+  // not persisted and must be set every boot.
+  public void applyTo(TalonSRX talon, int timeoutMs) {
+    // Applied output and faults
+    talon.setStatusFramePeriod(StatusFrameEnhanced.Status_1_General, controlPeriodMs, timeoutMs);
+    // Selected sensor and current
+    talon.setStatusFramePeriod(StatusFrameEnhanced.Status_2_Feedback0, sensorPeriodMs, timeoutMs);
+    // Bus voltage and temperature
+    talon.setStatusFramePeriod(StatusFrameEnhanced.Status_4_AinTempVbat, telemetryPeriodMs, timeoutMs);
+    talon.setStatusFramePeriod(StatusFrameEnhanced.Status_3_Quadrature, unusedPeriodMs, timeoutMs);
+    talon.setStatusFramePeriod(StatusFrameEnhanced.Status_8_PulseWidth, unusedPeriodMs, timeoutMs);
+    talon.setStatusFramePeriod(StatusFrameEnhanced.Status_10_Targets, unusedPeriodMs, timeoutMs);
+    talon.setStatusFramePeriod(StatusFrameEnhanced.Status_12_Feedback1, unusedPeriodMs, timeoutMs);
+    talon.setStatusFramePeriod(StatusFrameEnhanced.Status_13_Base_PIDF0, unusedPeriodMs, timeoutMs);
+    talon.setStatusFramePeriod(StatusFrameEnhanced.Status_14_Turn_PIDF1, unusedPeriodMs, timeoutMs);
+  }
+
+  // Sets the status frame periods of a Victor SPX that follows another
+  // controller. Nothing reads a follower during a match, so all of its frames
+  // are diagnostics at most.
+  public void applyTo(VictorSPX victor, int timeoutMs) {
+    victor.setStatusFramePeriod(StatusFrame.Status_1_General, diagnosticsPeriodMs, timeoutMs);
+    victor.setStatusFramePeriod(StatusFrame.Status_4_AinTempVbat, diagnosticsPeriodMs, timeoutMs);
+    victor.setStatusFramePeriod(StatusFrame.Status_2_Feedback0, unusedPeriodMs, timeoutMs);
+    victor.setStatusFramePeriod(StatusFrame.Status_10_Targets, unusedPeriodMs, timeoutMs);
+    victor.setStatusFramePeriod(StatusFrame.Status_12_Feedback1, unusedPeriodMs, timeoutMs);
+    victor.setStatusFramePeriod(StatusFrame.Status_13_Base_PIDF0, unusedPeriodMs, timeoutMs);
+    victor.setStatusFramePeriod(StatusFrame.Status_14_Turn_PIDF1, unusedPeriodMs, timeoutMs);
+  }
+
+  // Turns off every signal of a Phoenix 6 device that has not been given an
+  // update frequency, unless the profile keeps diagnostics flowing. Must be
+  // called after the frequencies of the signals in use have been set.
+  public void applyTo(ParentDevice device) {
+    if (this == MATCH) {
+      device.optimizeBusUtilization();
+    }
+  }
+
+  // Fills in the signal periods of a SPARK MAX driving a brushed motor with no
+  // sensor. The config should be applied without persisting, every boot.
+  public void applyTo(SparkMaxConfig config) {
+    config.signals
+        .appliedOutputPeriodMs(controlPeriodMs)
+        .outputCurrentPeriodMs(controlPeriodMs)
+        .busVoltagePeriodMs(telemetryPeriodMs)
+        .motorTemperaturePeriodMs(diagnosticsPeriodMs)
+        .faultsPeriodMs(diagnosticsPeriodMs)
+        .warningsPeriodMs(diagnosticsPeriodMs)
+        .limitsPeriodMs(unusedPeriodMs)
+        .primaryEncoderPositionPeriodMs(unusedPeriodMs)
+        .primaryEncoderVelocityPeriodMs(unusedPeriodMs)
+        .analogVoltagePeriodMs(unusedPeriodMs)
+        .analogPositionPeriodMs(unusedPeriodMs)
+        .analogVelocityPeriodMs(unusedPeriodMs)
+        .absoluteEncoderPositionPeriodMs(unusedPeriodMs)
+        .absoluteEncoderVelocityPeriodMs(unusedPeriodMs)
+        .iAccumulationPeriodMs(unusedPeriodMs);
+  }
+}
@@ -0,0 +1,154 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.PubSubOption;
+import edu.wpi.first.networktables.StringPublisher;
+import edu.wpi.first.wpilibj.TimedRobot;
+
+/**
+ * A group of dashboard values that belong together, such as one subsystem's,
+ * published at the group's own rate. Each value is a field with a typed NT4
+ * publisher that is created once, when the field is added. Setting a field only
+ * stores the value in the field. {@link #publishAll()} is called once per loop
+ * and sends each group's fields every few loops, as set by the group's period,
+ * skipping any field whose value has not changed since it was last sent.
+ *
+ * <p>
+ * Values are published under the SmartDashboard table, with the group name as
+ * the first part of the key, so existing dashboard layouts keep working. Groups
+ * and fields must only be used from the robot thread.
+ */
+public final class TelemetryGroup {
+  // Every group that has been created
+  private static final List<TelemetryGroup> groups = new ArrayList<>();
+
+  private final NetworkTable table;
+  private final double periodSeconds;
+  private final int periodLoops;
+  private final List<Field> fields = new ArrayList<>();
+  private final Map<String, Field> fieldsByName = new HashMap<>();
+  private int loopsUntilPublish;
+
+  // Creates a group published under SmartDashboard/<name> at most once every
+  // periodSeconds, rounded to whole robot loops
+  public TelemetryGroup(String name, double periodSeconds) {
+    table = NetworkTableInstance.getDefault().getTable("SmartDashboard").getSubTable(name);
+    this.periodSeconds = periodSeconds;
+    periodLoops = Math.max(1, (int) Math.round(periodSeconds / TimedRobot.kDefaultPeriod));
+    groups.add(this);
+  }
+
+  // Adds a number field, or returns the existing one with the same name. The
+  // name may contain slashes to put the field in a sub-table.
+  public DoubleField addDouble(String name) {
+    Field field = fieldsByName.get(name);
+    if (field == null) {
+      field = new DoubleField(table.getDoubleTopic(name).publish(PubSubOption.periodic(periodSeconds)));
+      add(name, field);
+    }
+    return (DoubleField) field;
+  }
+
+  // Adds a text field, or returns the existing one with the same name
+  public StringField addString(String name) {
+    Field field = fieldsByName.get(name);
+    if (field == null) {
+      field = new StringField(table.getStringTopic(name).publish(PubSubOption.periodic(periodSeconds)));
+      add(name, field);
+    }
+    return (StringField) field;
+  }
+
+  private void add(String name, Field field) {
+    fields.add(field);
+    fieldsByName.put(name, field);
+  }
+
+  // Sends the changed fields of every group that is due. Call once per loop.
+  public static void publishAll() {
+    for (int i = 0; i < groups.size(); i++) {
+      groups.get(i).publish();
+    }
+  }
+
+  private void publish() {
+    if (--loopsUntilPublish > 0) {
+      return;
+    }
+    loopsUntilPublish = periodLoops;
+    for (int i = 0; i < fields.size(); i++) {
+      fields.get(i).send();
+    }
+  }
+
+  private abstract static class Field {
+    // Sends the value if it has been set and differs from the last one sent
+    abstract void send();
+  }
+
+  /** A number published by a {@link TelemetryGroup}. */
+  public static final class DoubleField extends Field {
+    private final DoublePublisher publisher;
+    private double value;
+    private double sentValue;
+    private boolean hasValue;
+    private boolean hasSent;
+
+    private DoubleField(DoublePublisher publisher) {
+      this.publisher = publisher;
+    }
+
+    // Sets the value to send the next time the group publishes
+    public void set(double value) {
+      this.value = value;
+      hasValue = true;
+    }
+
+    @Override
+    void send() {
+      // Compare bits so that NaN counts as unchanged
+      if (!hasValue || (hasSent && Double.doubleToLongBits(value) == Double.doubleToLongBits(sentValue))) {
+        return;
+      }
+      publisher.set(value);
+      sentValue = value;
+      hasSent = true;
+    }
+  }
+
+  /** A piece of text published by a {@link TelemetryGroup}. */
+  public static final class StringField extends Field {
+    private final StringPublisher publisher;
+    private String value;
+    private String sentValue;
+
+    private StringField(StringPublisher publisher) {
+      this.publisher = publisher;
+    }
+
+    // Sets the value to send the next time the group publishes
+    public void set(String value) {
+      this.value = value;
+    }
+
+    @Override
+    void send() {
+      if (value == null || value.equals(sentValue)) {
+        return;
+      }
+      publisher.set(value);
+      sentValue = value;
+    }
+  }
+}
@@ -0,0 +1,70 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.wpi.first.networktables.BooleanEntry;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+
+/**
+ * A switch that can be toggled from the dashboard. Works the same way as
+ * {@link TunableNumber}: the value lives in a field that is only updated when
+ * NetworkTables reports a change.
+ */
+public class TunableBoolean {
+  // Every tunable switch that has been declared, in declaration order
+  private static final Map<String, TunableBoolean> registry = new LinkedHashMap<>();
+
+  private final String key;
+  private final boolean defaultValue;
+  private final BooleanEntry entry;
+  private volatile boolean value;
+  // Recorded by the input log so that dashboard changes are replayed
+  private final LoggedInput input;
+
+  // Creates a switch under the SmartDashboard table, publishes its default
+  // value and starts listening for changes made from the dashboard
+  public TunableBoolean(String key, boolean defaultValue) {
+    this.key = key;
+    this.defaultValue = defaultValue;
+    this.value = defaultValue;
+    this.input = LoggedInput.ofBoolean("Tunable/" + key, () -> value);
+
+    NetworkTableInstance inst = NetworkTableInstance.getDefault();
+    entry = inst.getTable("SmartDashboard").getBooleanTopic(key).getEntry(defaultValue);
+    entry.set(defaultValue);
+    inst.addListener(entry, EnumSet.of(NetworkTableEvent.Kind.kValueAll),
+        event -> value = event.valueData.value.getBoolean());
+
+    synchronized (registry) {
+      registry.put(key, this);
+    }
+  }
+
+  // Returns the current value. Safe to call from the robot loop every cycle.
+  public boolean get() {
+    return input.getBoolean();
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  public boolean getDefault() {
+    return defaultValue;
+  }
+
+  // Returns every declared switch, in the order they were declared
+  public static List<TunableBoolean> getAll() {
+    synchronized (registry) {
+      return List.copyOf(registry.values());
+    }
+  }
+}
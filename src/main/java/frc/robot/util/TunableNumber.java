@@ -0,0 +1,54 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.EnumSet;
+
+import edu.wpi.first.networktables.DoubleEntry;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+
+/**
+ * A number that can be tuned from the dashboard. The value is kept in a
+ * primitive field that is only updated when NetworkTables reports a change, so
+ * reading it every loop is a plain field read instead of a string-keyed
+ * SmartDashboard lookup.
+ */
+public class TunableNumber {
+  private final String key;
+  private final double defaultValue;
+  private final DoubleEntry entry;
+  private volatile double value;
+  // Recorded by the input log so that dashboard changes are replayed
+  private final LoggedInput input;
+
+  // Creates a tunable under the SmartDashboard table, publishes its default
+  // value and starts listening for changes made from the dashboard
+  public TunableNumber(String key, double defaultValue) {
+    this.key = key;
+    this.defaultValue = defaultValue;
+    this.value = defaultValue;
+    this.input = LoggedInput.of("Tunable/" + key, () -> value);
+
+    NetworkTableInstance inst = NetworkTableInstance.getDefault();
+    entry = inst.getTable("SmartDashboard").getDoubleTopic(key).getEntry(defaultValue);
+    entry.set(defaultValue);
+    inst.addListener(entry, EnumSet.of(NetworkTableEvent.Kind.kValueAll),
+        event -> value = event.valueData.value.getDouble());
+  }
+
+  // Returns the current value. Safe to call from the robot loop every cycle.
+  public double get() {
+    return input.get();
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  public double getDefault() {
+    return defaultValue;
+  }
+}
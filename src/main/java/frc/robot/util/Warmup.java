@@ -0,0 +1,117 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import static frc.robot.Constants.WarmupConstants.*;
+
+/**
+ * Warms up the JIT while the robot is disabled. Each pass runs every registered
+ * command through initialize(), a few execute() calls and end(), so that class
+ * loading, lambda bootstrapping and compilation of those paths happen before
+ * the match instead of in the first enabled loops. Motor outputs are muted for
+ * the duration of each pass, so no hardware is commanded, and the registered
+ * restore actions run at the end of each pass to put the subsystems back in
+ * their idle state.
+ *
+ * <p>
+ * Passes are timed with the {@link LoopTimer}. Warmup stops once the pass time
+ * has stopped changing, which means the code has reached its steady state.
+ */
+public class Warmup {
+  private final List<Supplier<Command>> commands = new ArrayList<>();
+  private final List<Runnable> restores = new ArrayList<>();
+  private final LoopTimer.Section timing = LoopTimer.section("Warmup");
+
+  private long lastPassNanos;
+  private int steadyPasses;
+  private int passes;
+  private boolean done;
+
+  // Adds a command that is reused for every pass, such as a bound command
+  public void addCommand(Command command) {
+    commands.add(() -> command);
+  }
+
+  // Adds a factory that is called to build a new command for every pass, such
+  // as an autonomous routine, so that building it is warmed up too
+  public void addFactory(Supplier<Command> factory) {
+    commands.add(factory);
+  }
+
+  // Returns the name of every command that is warmed up. Factories are called
+  // once each to build a command to name.
+  public List<String> getCommandNames() {
+    List<String> names = new ArrayList<>();
+    for (Supplier<Command> command : commands) {
+      names.add(command.get().getName());
+    }
+    return names;
+  }
+
+  // Adds an action that is run after every pass to undo any state the
+  // commands left behind, such as a subsystem's mode or a running detector
+  public void addRestore(Runnable restore) {
+    restores.add(restore);
+  }
+
+  // Runs one warmup pass, unless warmup has already finished. Must only be
+  // called while the robot is disabled.
+  public void runPass() {
+    if (done) {
+      return;
+    }
+
+    long start = System.nanoTime();
+    CachedMotorOutput.setMuted(true);
+    try {
+      for (int i = 0; i < commands.size(); i++) {
+        Command command = commands.get(i).get();
+        // Leave alone anything that the scheduler is actually running
+        if (CommandScheduler.getInstance().isScheduled(command)) {
+          continue;
+        }
+        command.initialize();
+        for (int j = 0; j < WARMUP_EXECUTES_PER_PASS; j++) {
+          command.execute();
+        }
+        command.end(true);
+      }
+    } finally {
+      for (int i = 0; i < restores.size(); i++) {
+        restores.get(i).run();
+      }
+      CachedMotorOutput.setMuted(false);
+    }
+    long passNanos = System.nanoTime() - start;
+    timing.record(passNanos);
+    passes++;
+
+    // The pass time is steady once it stays within the tolerance of the
+    // previous pass for enough passes in a row
+    if (Math.abs(passNanos - lastPassNanos) <= WARMUP_STEADY_TOLERANCE * lastPassNanos) {
+      steadyPasses++;
+    } else {
+      steadyPasses = 0;
+    }
+    lastPassNanos = passNanos;
+
+    if (steadyPasses >= WARMUP_STEADY_PASSES || passes >= WARMUP_MAX_PASSES) {
+      done = true;
+      DataLogManager.log(String.format("Warmup finished after %d passes, last pass %.2f ms%s", passes,
+          passNanos / 1e6, steadyPasses >= WARMUP_STEADY_PASSES ? "" : " (not steady)"));
+    }
+  }
+
+  public boolean isDone() {
+    return done;
+  }
+}
@@ -0,0 +1,120 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.sun.management.ThreadMXBean;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.util.TunableBoolean;
+
+/**
+ * Checks that the drive path does not allocate. Each test warms the path up
+ * until the JIT has compiled it, then runs it several thousand more times and
+ * fails if the robot thread allocated anything while doing so.
+ */
+class CANDriveSubsystemTest {
+  private static final int WARMUP_CALLS = 20_000;
+  private static final int MEASURED_CALLS = 5_000;
+  private static final String LATE_SAMPLED_KEY = "Late-sampled drive";
+
+  private static CANDriveSubsystem driveSubsystem;
+  private static double input;
+
+  @BeforeAll
+  static void setup() {
+    assertTrue(HAL.initialize(500, 0), "Failed to initialize the simulated HAL");
+    DriverStationSim.setDsAttached(true);
+    DriverStationSim.setAutonomous(false);
+    DriverStationSim.setEnabled(true);
+    DriverStationSim.notifyNewData();
+    DriverStation.refreshData();
+    driveSubsystem = new CANDriveSubsystem();
+  }
+
+  @Test
+  void arcadeDriveDoesNotAllocate() {
+    assertNoAllocation(() -> driveSubsystem.arcadeDrive(nextInput(), -input));
+  }
+
+  @Test
+  void curvatureDriveDoesNotAllocate() {
+    assertNoAllocation(() -> driveSubsystem.curvatureDrive(nextInput(), -input, false));
+    assertNoAllocation(() -> driveSubsystem.curvatureDrive(nextInput(), -input, true));
+  }
+
+  @Test
+  void driveArcadeCommandDoesNotAllocate() {
+    Command command = driveSubsystem.driveArcade(() -> input, () -> -input);
+    command.initialize();
+    assertNoAllocation(() -> {
+      nextInput();
+      command.execute();
+    });
+    command.end(true);
+  }
+
+  @Test
+  void lateSampledDriveDoesNotAllocate() {
+    Command command = driveSubsystem.driveArcadeLateSampled(() -> input, () -> -input);
+    command.initialize();
+    // Both with the inputs read in execute() and with them read in the flush
+    for (boolean lateSampled : new boolean[] {false, true}) {
+      setLateSampledDrive(lateSampled);
+      assertNoAllocation(() -> {
+        nextInput();
+        command.execute();
+        driveSubsystem.flushLateSampledDrive();
+      });
+    }
+    command.end(true);
+  }
+
+  // Varies the input every call so the output cache has to send new values
+  private static double nextInput() {
+    input = input > 0.9 ? -0.9 : input + 0.01;
+    return input;
+  }
+
+  // Sets the late-sampled drive switch from the dashboard and waits for the
+  // change to reach the tunable
+  private static void setLateSampledDrive(boolean on) {
+    SmartDashboard.putBoolean(LATE_SAMPLED_KEY, on);
+    TunableBoolean tunable = TunableBoolean.getAll().stream()
+        .filter(t -> t.getKey().equals(LATE_SAMPLED_KEY))
+        .findFirst()
+        .orElseThrow();
+    long deadline = System.nanoTime() + 1_000_000_000L;
+    while (tunable.get() != on) {
+      assertTrue(System.nanoTime() < deadline, "Late-sampled drive switch did not change");
+      Thread.onSpinWait();
+    }
+  }
+
+  private static void assertNoAllocation(Runnable call) {
+    for (int i = 0; i < WARMUP_CALLS; i++) {
+      call.run();
+    }
+    ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    long before = threads.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < MEASURED_CALLS; i++) {
+      call.run();
+    }
+    long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+    assertEquals(0, allocated, "Bytes allocated over " + MEASURED_CALLS + " calls");
+  }
+}